@@ -0,0 +1,270 @@
+package ru.ifmo.ctddev.dyadyushkin.arrayset;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Set algebra on sorted sets, giving new {@link NavigableSet}s.
+ * Sets of this package, including their views, are merged over their arrays, other sorted sets are copied first.
+ * Both sets should have the same order, any comparator is allowed.
+ * <p>
+ * Sets of similar sizes are merged linearly. When one set is much smaller, each of its elements is found
+ * in the larger set by galloping and runs of the larger set between them are copied in bulk.
+ * Very large inputs are cut into pieces at common split points and merged in the fork-join pool.
+ */
+public final class ArraySets {
+    // Smaller set is galloped through the larger one when it is this many times smaller
+    private final static int gallopRatio = 32;
+    // Inputs larger than this in total are merged in parallel...
+    private final static int parallelThreshold = 1 << 20;
+    // ...in pieces of about this size
+    private final static int pieceSize = 1 << 16;
+
+    // Which elements go to the result
+    private final static int onlyA = 1, onlyB = 2, both = 4;
+
+    private ArraySets() {}
+
+    private static class Range<E> {
+        final E[] items;
+        final int from, to;
+
+        Range(E[] items, int from, int to) {
+            this.items = items;
+            this.from  = from;
+            this.to    = to;
+        }
+
+        int size() {
+            return to - from;
+        }
+    }
+
+    /**
+     * Parts of both ranges merged by one task.
+     */
+    private static class Piece<E> {
+        final Range<E> a, b;
+
+        Piece(Range<E> a, Range<E> b) {
+            this.a = a;
+            this.b = b;
+        }
+    }
+
+    public static <E> NavigableSet<E> union(java.util.SortedSet<E> a, java.util.SortedSet<E> b) {
+        return combine(a, b, onlyA | onlyB | both);
+    }
+
+    public static <E> NavigableSet<E> intersection(java.util.SortedSet<E> a, java.util.SortedSet<E> b) {
+        return combine(a, b, both);
+    }
+
+    /**
+     * @return elements of {@code a} which are not in {@code b}
+     */
+    public static <E> NavigableSet<E> difference(java.util.SortedSet<E> a, java.util.SortedSet<E> b) {
+        return combine(a, b, onlyA);
+    }
+
+    public static <E> NavigableSet<E> symmetricDifference(java.util.SortedSet<E> a, java.util.SortedSet<E> b) {
+        return combine(a, b, onlyA | onlyB);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> Range<E> range(java.util.SortedSet<E> set) {
+        if (set instanceof SortedSet) {
+            SortedSet<E> s = (SortedSet<E>) set;
+            return new Range<>(s.elements, s.fromPosition, Math.max(s.fromPosition, s.toPosition));
+        }
+        E[] items = (E[]) set.toArray();
+        return new Range<>(items, 0, items.length);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> NavigableSet<E> combine(java.util.SortedSet<E> a, java.util.SortedSet<E> b, int mode) {
+        Comparator<E> c = (Comparator<E>) a.comparator();
+        if (!Objects.equals(c, b.comparator())) {
+            throw new IllegalArgumentException("Sets are ordered differently");
+        }
+        Range<E> ra = range(a), rb = range(b);
+        E[] result;
+        if (ra.size() + rb.size() > parallelThreshold) {
+            result = parallelMerge(c, ra, rb, mode);
+        }
+        else {
+            result = (E[]) new Object[capacity(ra, rb, mode)];
+            int n = merge(c, ra, rb, mode, result);
+            result = n == result.length ? result : Arrays.copyOf(result, n);
+        }
+        return NavigableSet.ofSorted(result, c);
+    }
+
+    /**
+     * @return upper bound of the result size
+     */
+    private static int capacity(Range<?> a, Range<?> b, int mode) {
+        if ((mode & onlyA) != 0) {
+            return (mode & onlyB) != 0 ? a.size() + b.size() : a.size();
+        }
+        return (mode & onlyB) != 0 ? b.size() : Math.min(a.size(), b.size());
+    }
+
+    /**
+     * Merge ranges into {@code out}, which has room for the whole result.
+     * @return number of elements written
+     */
+    private static <E> int merge(Comparator<E> c, Range<E> a, Range<E> b, int mode, E[] out) {
+        if (a.size() > (long) b.size() * gallopRatio) {
+            return gallop(c, b, a, swap(mode), false, out);
+        }
+        if (b.size() > (long) a.size() * gallopRatio) {
+            return gallop(c, a, b, mode, true, out);
+        }
+        E[] x = a.items, y = b.items;
+        int i = a.from, j = b.from, n = 0;
+        while (i < a.to && j < b.to) {
+            int cmp = compare(c, x[i], y[j]);
+            if (cmp < 0) {
+                if ((mode & onlyA) != 0) {
+                    out[n++] = x[i];
+                }
+                i++;
+            }
+            else if (cmp > 0) {
+                if ((mode & onlyB) != 0) {
+                    out[n++] = y[j];
+                }
+                j++;
+            }
+            else {
+                if ((mode & both) != 0) {
+                    out[n++] = x[i];
+                }
+                i++;
+                j++;
+            }
+        }
+        if ((mode & onlyA) != 0) {
+            System.arraycopy(x, i, out, n, a.to - i);
+            n += a.to - i;
+        }
+        if ((mode & onlyB) != 0) {
+            System.arraycopy(y, j, out, n, b.to - j);
+            n += b.to - j;
+        }
+        return n;
+    }
+
+    private static int swap(int mode) {
+        return (mode & both) | ((mode & onlyA) != 0 ? onlyB : 0) | ((mode & onlyB) != 0 ? onlyA : 0);
+    }
+
+    /**
+     * Merge with {@code small} as the first set and {@code large} as the second one for {@code mode}.
+     * @param smallFirst whether {@code small} is the first argument of the operation, its elements are kept for equal ones
+     */
+    private static <E> int gallop(Comparator<E> c, Range<E> small, Range<E> large, int mode, boolean smallFirst, E[] out) {
+        E[] s = small.items, l = large.items;
+        int j = large.from, n = 0;
+        for (int i = small.from; i < small.to; i++) {
+            int k = lowerBound(c, l, j, large.to, s[i]);
+            if ((mode & onlyB) != 0) {
+                System.arraycopy(l, j, out, n, k - j);
+                n += k - j;
+            }
+            if (k < large.to && compare(c, l[k], s[i]) == 0) {
+                if ((mode & both) != 0) {
+                    out[n++] = smallFirst ? s[i] : l[k];
+                }
+                k++;
+            }
+            else if ((mode & onlyA) != 0) {
+                out[n++] = s[i];
+            }
+            j = k;
+        }
+        if ((mode & onlyB) != 0) {
+            System.arraycopy(l, j, out, n, large.to - j);
+            n += large.to - j;
+        }
+        return n;
+    }
+
+    /**
+     * Exponential search from {@code from}, cheap when the answer is close to it.
+     * @return position of the first element in {@code [from, to)} not less than {@code key}, or {@code to}
+     */
+    private static <E> int lowerBound(Comparator<E> c, E[] items, int from, int to, E key) {
+        int lo = from, hi = from;
+        int step = 1;
+        while (hi < to && compare(c, items[hi], key) < 0) {
+            lo = hi + 1;
+            hi = to - hi > step ? hi + step : to;
+            step = step < (1 << 30) ? step << 1 : step;
+        }
+        int i = Arrays.binarySearch(items, lo, hi < to ? hi + 1 : hi, key, c);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> E[] parallelMerge(Comparator<E> c, Range<E> a, Range<E> b, int mode) {
+        List<Piece<E>> pieces = new ArrayList<>();
+        split(c, a, b, pieces);
+        List<ForkJoinTask<E[]>> tasks = new ArrayList<>(pieces.size());
+        for (Piece<E> piece: pieces) {
+            tasks.add(ForkJoinTask.adapt(() -> {
+                E[] out = (E[]) new Object[capacity(piece.a, piece.b, mode)];
+                int n = merge(c, piece.a, piece.b, mode, out);
+                return n == out.length ? out : Arrays.copyOf(out, n);
+            }));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        int total = 0;
+        for (ForkJoinTask<E[]> task: tasks) {
+            total += task.join().length;
+        }
+        E[] result = (E[]) new Object[total];
+        int n = 0;
+        for (ForkJoinTask<E[]> task: tasks) {
+            E[] part = task.join();
+            System.arraycopy(part, 0, result, n, part.length);
+            n += part.length;
+        }
+        return result;
+    }
+
+    /**
+     * Cut both ranges at the middle element of the larger one until pieces are small.
+     * Elements less than the split element go to the left pieces, so equal elements stay together.
+     */
+    private static <E> void split(Comparator<E> c, Range<E> a, Range<E> b, List<Piece<E>> pieces) {
+        if (a.size() + b.size() <= pieceSize) {
+            pieces.add(new Piece<>(a, b));
+            return;
+        }
+        Range<E> large = a.size() >= b.size() ? a : b;
+        Range<E> small = large == a ? b : a;
+        int mid = (large.from + large.to) >>> 1;
+        int i = Arrays.binarySearch(small.items, small.from, small.to, large.items[mid], c);
+        i = i >= 0 ? i : -i - 1;
+        Range<E> largeLeft  = new Range<>(large.items, large.from, mid);
+        Range<E> largeRight = new Range<>(large.items, mid, large.to);
+        Range<E> smallLeft  = new Range<>(small.items, small.from, i);
+        Range<E> smallRight = new Range<>(small.items, i, small.to);
+        if (large == a) {
+            split(c, largeLeft, smallLeft, pieces);
+            split(c, largeRight, smallRight, pieces);
+        }
+        else {
+            split(c, smallLeft, largeLeft, pieces);
+            split(c, smallRight, largeRight, pieces);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> int compare(Comparator<E> c, E a, E b) {
+        return c != null ? c.compare(a, b) : ((Comparable<? super E>) a).compareTo(b);
+    }
+}
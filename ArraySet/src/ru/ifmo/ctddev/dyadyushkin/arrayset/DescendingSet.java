@@ -0,0 +1,129 @@
+package ru.ifmo.ctddev.dyadyushkin.arrayset;
+
+import java.util.*;
+
+/**
+ * Reverse-order view of a {@link java.util.NavigableSet}.
+ * Nothing is copied: every query is answered by the base set with directions swapped.
+ */
+public class DescendingSet<E> extends AbstractSet<E> implements java.util.NavigableSet<E> {
+    private final java.util.NavigableSet<E> base;
+
+    public DescendingSet(java.util.NavigableSet<E> base) {
+        this.base = base;
+    }
+
+    @Override
+    public int size() {
+        return base.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return base.contains(o);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return base.descendingIterator();
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return base.iterator();
+    }
+
+    /**
+     * Array sets of this package are split by index, other sets use the iterator.
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        if (base instanceof SortedSet) {
+            return ((SortedSet<E>) base).spliterator(true);
+        }
+        if (base instanceof IndexedNavigableSet) {
+            return ((IndexedNavigableSet<E>) base).spliterator(true);
+        }
+        return java.util.NavigableSet.super.spliterator();
+    }
+
+    @Override
+    public E lower(E e) {
+        return base.higher(e);
+    }
+
+    @Override
+    public E floor(E e) {
+        return base.ceiling(e);
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return base.floor(e);
+    }
+
+    @Override
+    public E higher(E e) {
+        return base.lower(e);
+    }
+
+    @Override
+    public E first() {
+        return base.last();
+    }
+
+    @Override
+    public E last() {
+        return base.first();
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return Collections.reverseOrder(base.comparator());
+    }
+
+    @Override
+    public java.util.NavigableSet<E> descendingSet() {
+        return base;
+    }
+
+    @Override
+    public java.util.NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        return new DescendingSet<>(base.subSet(toElement, toInclusive, fromElement, fromInclusive));
+    }
+
+    @Override
+    public java.util.NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return new DescendingSet<>(base.tailSet(toElement, inclusive));
+    }
+
+    @Override
+    public java.util.NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return new DescendingSet<>(base.headSet(fromElement, inclusive));
+    }
+
+    @Override
+    public java.util.SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public java.util.SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public java.util.SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public E pollFirst() {
+        return base.pollLast();
+    }
+
+    @Override
+    public E pollLast() {
+        return base.pollFirst();
+    }
+}
@@ -0,0 +1,86 @@
+package ru.ifmo.ctddev.dyadyushkin.arrayset;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Spliterator over positions {@code [from, to)} of an immutable sorted sequence, in either direction.
+ * Splits halve the range, so parallel streams over large sets are balanced.
+ */
+class IndexSpliterator<E> implements Spliterator<E> {
+    private final static int characteristics = SIZED | SUBSIZED | SORTED | DISTINCT | ORDERED | IMMUTABLE | NONNULL;
+
+    private final IntFunction<E> get;
+    private final Comparator<? super E> comparator;
+    private final boolean descending;
+    private int from, to;
+
+    IndexSpliterator(IntFunction<E> get, int from, int to, Comparator<? super E> comparator, boolean descending) {
+        this.get        = get;
+        this.from       = from;
+        this.to         = to;
+        this.comparator = comparator;
+        this.descending = descending;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+        if (from >= to) {
+            return false;
+        }
+        action.accept(get.apply(descending ? --to : from++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super E> action) {
+        int lo = from, hi = to;
+        from = to;
+        if (descending) {
+            for (int i = hi - 1; i >= lo; i--) {
+                action.accept(get.apply(i));
+            }
+        }
+        else {
+            for (int i = lo; i < hi; i++) {
+                action.accept(get.apply(i));
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+        int mid = (from + to) >>> 1;
+        if (mid == from) {
+            return null;
+        }
+        // The prefix in encounter order is split off
+        Spliterator<E> prefix;
+        if (descending) {
+            prefix = new IndexSpliterator<>(get, mid, to, comparator, true);
+            to = mid;
+        }
+        else {
+            prefix = new IndexSpliterator<>(get, from, mid, comparator, false);
+            from = mid;
+        }
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return to - from;
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+
+    @Override
+    public Comparator<? super E> getComparator() {
+        return comparator;
+    }
+}
@@ -0,0 +1,203 @@
+package ru.ifmo.ctddev.dyadyushkin.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable {@link java.util.NavigableSet} view of a range {@code [from, to)} of sorted keys.
+ * Views share the keys and differ only in their bounds.
+ */
+public class IndexedNavigableSet<E> extends AbstractSet<E> implements java.util.NavigableSet<E> {
+    protected final SortedKeys<E> keys;
+    protected final int from, to;
+
+    IndexedNavigableSet(SortedKeys<E> keys, int from, int to) {
+        this.keys = keys;
+        this.from = from;
+        this.to   = to;
+    }
+
+    protected class IndexIterator implements Iterator<E> {
+        private int next;
+        private final int step, end;
+
+        IndexIterator(int first, int end, int step) {
+            this.next = first;
+            this.end  = end;
+            this.step = step;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != end;
+        }
+
+        @Override
+        public E next() {
+            if (next == end) {
+                throw new NoSuchElementException();
+            }
+            E e = keys.get(next);
+            next += step;
+            return e;
+        }
+    }
+
+    // Index helpers, all results are in [from - 1, to]
+
+    protected int ceilingIndex(E e) {
+        int i = keys.search(from, to, e);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    protected int higherIndex(E e) {
+        int i = keys.search(from, to, e);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    protected int floorIndex(E e) {
+        int i = keys.search(from, to, e);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    protected int lowerIndex(E e) {
+        int i = keys.search(from, to, e);
+        return i >= 0 ? i - 1 : -i - 2;
+    }
+
+    private E at(int i) {
+        return from <= i && i < to ? keys.get(i) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected int compare(E a, E b) {
+        Comparator<? super E> c = keys.comparator();
+        return c != null ? c.compare(a, b) : ((Comparable<? super E>) a).compareTo(b);
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean contains(Object o) {
+        return keys.search(from, to, (E) Objects.requireNonNull(o)) >= 0;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new IndexIterator(from, to, 1);
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return spliterator(false);
+    }
+
+    /**
+     * @param descending in reverse order, for {@link DescendingSet}
+     */
+    Spliterator<E> spliterator(boolean descending) {
+        Comparator<? super E> c = keys.comparator();
+        return new IndexSpliterator<>(keys::get, from, to, descending ? Collections.reverseOrder(c) : c, descending);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new IndexIterator(to - 1, from - 1, -1);
+    }
+
+    @Override
+    public E lower(E e) {
+        return at(lowerIndex(e));
+    }
+
+    @Override
+    public E floor(E e) {
+        return at(floorIndex(e));
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return at(ceilingIndex(e));
+    }
+
+    @Override
+    public E higher(E e) {
+        return at(higherIndex(e));
+    }
+
+    @Override
+    public E first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return keys.get(from);
+    }
+
+    @Override
+    public E last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return keys.get(to - 1);
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return keys.comparator();
+    }
+
+    @Override
+    public java.util.NavigableSet<E> descendingSet() {
+        return new DescendingSet<>(this);
+    }
+
+    @Override
+    public java.util.NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        int lo = fromInclusive ? ceilingIndex(fromElement) : higherIndex(fromElement);
+        int hi = (toInclusive ? floorIndex(toElement) : lowerIndex(toElement)) + 1;
+        return new IndexedNavigableSet<>(keys, lo, Math.max(lo, hi));
+    }
+
+    @Override
+    public java.util.NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        int hi = (inclusive ? floorIndex(toElement) : lowerIndex(toElement)) + 1;
+        return new IndexedNavigableSet<>(keys, from, hi);
+    }
+
+    @Override
+    public java.util.NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        int lo = inclusive ? ceilingIndex(fromElement) : higherIndex(fromElement);
+        return new IndexedNavigableSet<>(keys, lo, to);
+    }
+
+    @Override
+    public java.util.SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public java.util.SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public java.util.SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public E pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public E pollLast() {
+        throw new UnsupportedOperationException();
+    }
+}
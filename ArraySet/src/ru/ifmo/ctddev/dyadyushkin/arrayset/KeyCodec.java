@@ -0,0 +1,30 @@
+package ru.ifmo.ctddev.dyadyushkin.arrayset;
+
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+
+/**
+ * Fixed-width binary form of keys stored by {@link MappedArraySet}.
+ * Records are read with absolute methods of the buffer, so a codec may be shared between threads.
+ * @see KeyCodecs
+ */
+public interface KeyCodec<E> {
+    /**
+     * @return size of a record in bytes
+     */
+    int width();
+
+    E decode(ByteBuffer buffer, int offset);
+
+    void encode(E key, ByteBuffer buffer, int offset);
+
+    /**
+     * Compare the record at {@code offset} with {@code key} without decoding it.
+     */
+    int compare(ByteBuffer buffer, int offset, E key);
+
+    /**
+     * @return order of the keys, {@code null} for the natural one
+     */
+    Comparator<? super E> comparator();
+}
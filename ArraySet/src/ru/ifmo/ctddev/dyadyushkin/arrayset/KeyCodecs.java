@@ -0,0 +1,100 @@
+package ru.ifmo.ctddev.dyadyushkin.arrayset;
+
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+
+/**
+ * Standard key codecs for {@link MappedArraySet}.
+ */
+public final class KeyCodecs {
+    /**
+     * Signed {@code long} keys as 8 big-endian bytes, in natural order
+     */
+    public static final KeyCodec<Long> LONG = new KeyCodec<Long>() {
+        @Override
+        public int width() {
+            return 8;
+        }
+
+        @Override
+        public Long decode(ByteBuffer buffer, int offset) {
+            return buffer.getLong(offset);
+        }
+
+        @Override
+        public void encode(Long key, ByteBuffer buffer, int offset) {
+            buffer.putLong(offset, key);
+        }
+
+        @Override
+        public int compare(ByteBuffer buffer, int offset, Long key) {
+            return Long.compare(buffer.getLong(offset), key);
+        }
+
+        @Override
+        public Comparator<? super Long> comparator() {
+            return null;
+        }
+    };
+
+    private static final Comparator<byte[]> unsigned = (a, b) -> {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            if (a[i] != b[i]) {
+                return Integer.compare(a[i] & 0xff, b[i] & 0xff);
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    };
+
+    private KeyCodecs() {}
+
+    /**
+     * @return codec of {@code byte[]} keys of exactly {@code width} bytes, ordered as unsigned strings
+     */
+    public static KeyCodec<byte[]> bytes(int width) {
+        if (width <= 0) {
+            throw new IllegalArgumentException("Width should be positive: " + width);
+        }
+        return new KeyCodec<byte[]>() {
+            @Override
+            public int width() {
+                return width;
+            }
+
+            @Override
+            public byte[] decode(ByteBuffer buffer, int offset) {
+                byte[] key = new byte[width];
+                for (int i = 0; i < width; i++) {
+                    key[i] = buffer.get(offset + i);
+                }
+                return key;
+            }
+
+            @Override
+            public void encode(byte[] key, ByteBuffer buffer, int offset) {
+                if (key.length != width) {
+                    throw new IllegalArgumentException("Key of " + key.length + " bytes, expected " + width);
+                }
+                for (int i = 0; i < width; i++) {
+                    buffer.put(offset + i, key[i]);
+                }
+            }
+
+            @Override
+            public int compare(ByteBuffer buffer, int offset, byte[] key) {
+                for (int i = 0; i < Math.min(width, key.length); i++) {
+                    byte b = buffer.get(offset + i);
+                    if (b != key[i]) {
+                        return Integer.compare(b & 0xff, key[i] & 0xff);
+                    }
+                }
+                return Integer.compare(width, key.length);
+            }
+
+            @Override
+            public Comparator<? super byte[]> comparator() {
+                return unsigned;
+            }
+        };
+    }
+}
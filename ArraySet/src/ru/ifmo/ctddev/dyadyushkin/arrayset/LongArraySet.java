@@ -0,0 +1,208 @@
+package ru.ifmo.ctddev.dyadyushkin.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable sorted set of {@code long} values backed by a primitive array.
+ * Navigation methods do not box: they either return an index ({@code -1} if there is no such element)
+ * or take the value to return when there is no such element.
+ */
+public class LongArraySet {
+    // Keys in a node of the search tree, a cache line of them
+    private final static int nodeSize = 8;
+
+    private final long[] elements;
+    // Optional inner levels of a static B+ tree over the elements, see indexed()
+    private final long[] tree;
+    private final int[] levels;
+
+    /**
+     * @param values values in any order, duplicates allowed
+     */
+    public LongArraySet(long... values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (n == 0 || sorted[n - 1] != sorted[i]) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        elements = n == sorted.length ? sorted : Arrays.copyOf(sorted, n);
+        tree   = null;
+        levels = null;
+    }
+
+    private LongArraySet(long[] elements, long[] tree, int[] levels) {
+        this.elements = elements;
+        this.tree     = tree;
+        this.levels   = levels;
+    }
+
+    /**
+     * Wrap strictly increasing values without copying.
+     * @throws IllegalArgumentException if values are not strictly increasing
+     */
+    public static LongArraySet ofSorted(long[] values) {
+        for (int i = 1; i < values.length; i++) {
+            if (values[i - 1] >= values[i]) {
+                throw new IllegalArgumentException("Values are not strictly increasing at " + i);
+            }
+        }
+        return new LongArraySet(values, null, null);
+    }
+
+    /**
+     * @return set with the same elements which searches them through a static B+ tree,
+     * reading one cache line per level instead of one per comparison. It is faster for sets which do not fit
+     * in the CPU cache; the inner levels take about 1/8 of the memory of the elements
+     */
+    public LongArraySet indexed() {
+        if (tree != null) {
+            return this;
+        }
+        int n = elements.length;
+        int[] levels = StaticTree.levels(n, nodeSize);
+        long[] tree = new long[levels[levels.length - 1]];
+        for (int h = 0; h + 1 < levels.length; h++) {
+            for (int k = levels[h]; k < levels[h + 1]; k++) {
+                long i = StaticTree.position(levels, nodeSize, h, (k - levels[h]) / nodeSize, (k - levels[h]) % nodeSize);
+                tree[k] = i < n ? elements[(int) i] : Long.MAX_VALUE;
+            }
+        }
+        return new LongArraySet(elements, tree, levels);
+    }
+
+    /**
+     * Same result as {@link Arrays#binarySearch(long[], long)}.
+     */
+    private int search(long e) {
+        if (tree == null) {
+            return Arrays.binarySearch(elements, e);
+        }
+        long[] t = tree;
+        int k = 0;
+        for (int h = 0; h + 1 < levels.length; h++) {
+            int base = levels[h] + k * nodeSize;
+            int c = 0;
+            for (int i = 0; i < nodeSize; i++) {
+                // Padding keys are never less than e
+                c += t[base + i] < e ? 1 : 0;
+            }
+            k = k * (nodeSize + 1) + c;
+        }
+        long[] a = elements;
+        int from = k * nodeSize;
+        int to = Math.min(from + nodeSize, a.length);
+        int i = from;
+        for (int j = from; j < to; j++) {
+            i += a[j] < e ? 1 : 0;
+        }
+        return i < a.length && a[i] == e ? i : -i - 1;
+    }
+
+    public int size() {
+        return elements.length;
+    }
+
+    public boolean isEmpty() {
+        return elements.length == 0;
+    }
+
+    public long get(int index) {
+        return elements[index];
+    }
+
+    public boolean contains(long e) {
+        return search(e) >= 0;
+    }
+
+    /**
+     * @return index of {@code e} or {@code -1}
+     */
+    public int indexOf(long e) {
+        return Math.max(search(e), -1);
+    }
+
+    public int lowerIndex(long e) {
+        int i = search(e);
+        return i >= 0 ? i - 1 : -i - 2;
+    }
+
+    public int floorIndex(long e) {
+        int i = search(e);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    public int ceilingIndex(long e) {
+        int i = search(e);
+        i = i >= 0 ? i : -i - 1;
+        return i < elements.length ? i : -1;
+    }
+
+    public int higherIndex(long e) {
+        int i = search(e);
+        i = i >= 0 ? i + 1 : -i - 1;
+        return i < elements.length ? i : -1;
+    }
+
+    private long at(int index, long absent) {
+        return index >= 0 ? elements[index] : absent;
+    }
+
+    public long lower(long e, long absent) {
+        return at(lowerIndex(e), absent);
+    }
+
+    public long floor(long e, long absent) {
+        return at(floorIndex(e), absent);
+    }
+
+    public long ceiling(long e, long absent) {
+        return at(ceilingIndex(e), absent);
+    }
+
+    public long higher(long e, long absent) {
+        return at(higherIndex(e), absent);
+    }
+
+    public PrimitiveIterator.OfLong longIterator() {
+        return Arrays.stream(elements).iterator();
+    }
+
+    public long[] toLongArray() {
+        return elements.clone();
+    }
+
+    /**
+     * @return boxing view of the set, sharing the array
+     */
+    public java.util.NavigableSet<Long> asNavigableSet() {
+        return new IndexedNavigableSet<>(new SortedKeys<Long>() {
+            @Override
+            public int size() {
+                return elements.length;
+            }
+
+            @Override
+            public Long get(int index) {
+                return elements[index];
+            }
+
+            @Override
+            public int search(int from, int to, Long key) {
+                return from == 0 && to == elements.length ? LongArraySet.this.search(key) : Arrays.binarySearch(elements, from, to, key);
+            }
+
+            @Override
+            public Comparator<? super Long> comparator() {
+                return null;
+            }
+        }, 0, elements.length);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(elements);
+    }
+}
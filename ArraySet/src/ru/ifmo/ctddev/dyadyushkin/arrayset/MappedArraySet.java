@@ -0,0 +1,142 @@
+package ru.ifmo.ctddev.dyadyushkin.arrayset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Comparator;
+
+/**
+ * Immutable set of keys stored in a file of fixed-width records in ascending order, see {@link #write}.
+ * The file is mapped read-only, so opening takes constant time, nothing is kept on heap
+ * and pages are shared with other processes mapping the same file.
+ * Views and navigation are the same as for {@link IndexedNavigableSet}.
+ */
+public class MappedArraySet<E> extends IndexedNavigableSet<E> {
+    // Largest mapped segment, a buffer cannot be longer than 2 GB
+    private final static int segmentSize = 1 << 30;
+    private final static int bufferSize = 1 << 16;
+
+    private static class MappedKeys<E> implements SortedKeys<E> {
+        private final KeyCodec<E> codec;
+        private final ByteBuffer[] segments;
+        private final int width, perSegment, size;
+
+        MappedKeys(FileChannel channel, KeyCodec<E> codec, int size) throws IOException {
+            this.codec = codec;
+            this.size  = size;
+            width      = codec.width();
+            perSegment = segmentSize / width;
+            segments   = new ByteBuffer[(size + perSegment - 1) / perSegment];
+            for (int i = 0; i < segments.length; i++) {
+                long records = Math.min(perSegment, size - (long) i * perSegment);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, (long) i * perSegment * width, records * width);
+            }
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public E get(int index) {
+            return codec.decode(segments[index / perSegment], index % perSegment * width);
+        }
+
+        @Override
+        public int search(int from, int to, E key) {
+            int lo = from, hi = to - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = codec.compare(segments[mid / perSegment], mid % perSegment * width, key);
+                if (c < 0) {
+                    lo = mid + 1;
+                }
+                else if (c > 0) {
+                    hi = mid - 1;
+                }
+                else {
+                    return mid;
+                }
+            }
+            return -lo - 1;
+        }
+
+        @Override
+        public Comparator<? super E> comparator() {
+            return codec.comparator();
+        }
+    }
+
+    private MappedArraySet(MappedKeys<E> keys) {
+        super(keys, 0, keys.size());
+    }
+
+    /**
+     * Map a file written by {@link #write}. Order of the records is not checked.
+     * @throws IOException if the file cannot be mapped or its size is not a multiple of the record width
+     */
+    public static <E> MappedArraySet<E> open(Path file, KeyCodec<E> codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length % codec.width() != 0) {
+                throw new IOException("File size is not a multiple of " + codec.width() + ": " + file);
+            }
+            if (length / codec.width() > Integer.MAX_VALUE) {
+                throw new IOException("Too many records: " + file);
+            }
+            // Mappings stay valid after the channel is closed
+            return new MappedArraySet<>(new MappedKeys<>(channel, codec, (int) (length / codec.width())));
+        }
+    }
+
+    /**
+     * Write distinct keys in ascending order, replacing {@code file}.
+     * @throws IllegalArgumentException if keys are not strictly increasing
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> void write(Path file, Iterable<? extends E> keys, KeyCodec<E> codec) throws IOException {
+        Comparator<? super E> comparator = codec.comparator();
+        int width = codec.width();
+        Path parent = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(Math.max(bufferSize / width, 1) * width);
+                E previous = null;
+                for (E key: keys) {
+                    if (previous != null && (comparator != null
+                            ? comparator.compare(previous, key)
+                            : ((Comparable<? super E>) previous).compareTo(key)) >= 0) {
+                        throw new IllegalArgumentException("Keys are not strictly increasing");
+                    }
+                    if (!buffer.hasRemaining()) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                        buffer.clear();
+                    }
+                    codec.encode(key, buffer, buffer.position());
+                    buffer.position(buffer.position() + width);
+                    previous = key;
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package ru.ifmo.ctddev.dyadyushkin.arrayset;
+
+import java.util.*;
+
+/**
+ * Mutable sorted set over an immutable {@link NavigableSet} base.
+ * Added elements go to a small sorted delta and removed elements of the base are marked with tombstones,
+ * a bitmap over positions in the base, so navigation skips a run of removed elements a word at a time;
+ * lookups consult all three. Once the delta and tombstones grow to a fraction of the base,
+ * they are merged into a new base in one linear pass, so updates cost amortized {@code O(log n)}.
+ * <p>
+ * Base arrays are never modified, so {@link #snapshot()} is free while there are no pending changes
+ * and published snapshots stay valid. Not thread-safe.
+ */
+public class MutableArraySet<E> extends AbstractSet<E> {
+    // Changes are merged when there are more of them than this...
+    private final static int minPending = 1 << 10;
+    // ...and than this share of the base
+    private final static int pendingShare = 8;
+
+    private final Comparator<E> comparator;
+    private NavigableSet<E> base;
+    // Elements which are not in the base
+    private final TreeSet<E> delta;
+    // Positions of removed elements of the base
+    private BitSet tombstones;
+    private int removed;
+
+    public MutableArraySet() {
+        this(new NavigableSet<>());
+    }
+
+    public MutableArraySet(Collection<E> c, Comparator<E> cmp) {
+        this(new NavigableSet<>(c, cmp));
+    }
+
+    /**
+     * Start from {@code base}, which is shared and not copied.
+     */
+    @SuppressWarnings("unchecked")
+    public MutableArraySet(NavigableSet<E> base) {
+        this.base       = base;
+        this.comparator = (Comparator<E>) base.comparator();
+        this.delta      = new TreeSet<>(comparator);
+        this.tombstones = new BitSet();
+    }
+
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public int size() {
+        return base.size() - removed + delta.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        int i = position(o);
+        return i >= 0 ? !tombstones.get(i) : delta.contains(o);
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        int i = position(e);
+        if (i >= 0) {
+            if (!tombstones.get(i)) {
+                return false;
+            }
+            tombstones.clear(i);
+            removed--;
+            return true;
+        }
+        if (!delta.add(e)) {
+            return false;
+        }
+        compactIfNeeded();
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int i = position(o);
+        if (i < 0) {
+            return delta.remove(o);
+        }
+        if (tombstones.get(i)) {
+            return false;
+        }
+        tombstones.set(i);
+        removed++;
+        compactIfNeeded();
+        return true;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        List<E> removed = new ArrayList<>();
+        for (E e: this) {
+            if (!c.contains(e)) {
+                removed.add(e);
+            }
+        }
+        return removeAll(removed);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean changed = false;
+        for (Object o: c) {
+            changed |= remove(o);
+        }
+        return changed;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void clear() {
+        base = NavigableSet.ofSorted((E[]) new Object[0], comparator);
+        delta.clear();
+        tombstones = new BitSet();
+        removed = 0;
+    }
+
+    /**
+     * @return immutable set of the current elements, sharing the base array with this set
+     */
+    public NavigableSet<E> snapshot() {
+        compact();
+        return base;
+    }
+
+    private void compactIfNeeded() {
+        int pending = delta.size() + removed;
+        if (pending > minPending && pending > base.size() / pendingShare) {
+            compact();
+        }
+    }
+
+    /**
+     * Merge the delta and tombstones into a new base.
+     */
+    @SuppressWarnings("unchecked")
+    public void compact() {
+        if (delta.isEmpty() && removed == 0) {
+            return;
+        }
+        E[] merged = (E[]) new Object[size()];
+        int n = 0;
+        Iterator<E> i = iterator();
+        while (i.hasNext()) {
+            merged[n++] = i.next();
+        }
+        base = NavigableSet.ofSorted(merged, comparator);
+        delta.clear();
+        tombstones = new BitSet();
+        removed = 0;
+    }
+
+    /**
+     * Iterator over the base without tombstones and the delta, merged in order.
+     * It does not support removal.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private final Iterator<E> right = delta.iterator();
+            private int left = -1;
+            private E a = advance(), b = right.hasNext() ? right.next() : null;
+
+            private E advance() {
+                left = tombstones.nextClearBit(left + 1);
+                return left < base.size() ? base.select(left) : null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return a != null || b != null;
+            }
+
+            @Override
+            public E next() {
+                E e;
+                if (a != null && (b == null || compare(a, b) < 0)) {
+                    e = a;
+                    a = advance();
+                }
+                else if (b != null) {
+                    e = b;
+                    b = right.hasNext() ? right.next() : null;
+                }
+                else {
+                    throw new NoSuchElementException();
+                }
+                return e;
+            }
+        };
+    }
+
+    // Navigation
+
+    /**
+     * @return position of {@code o} in the base, or {@code -(insertion point) - 1} as for {@link Arrays#binarySearch}
+     */
+    @SuppressWarnings("unchecked")
+    private int position(Object o) {
+        int i = base.binarySearch((E) o);
+        return i >= 0 ? i - base.fromPosition : i + base.fromPosition;
+    }
+
+    /**
+     * @return first live element of the base at position {@code i} or after it
+     */
+    private E up(int i) {
+        i = tombstones.nextClearBit(i);
+        return i < base.size() ? base.select(i) : null;
+    }
+
+    /**
+     * @return last live element of the base at position {@code i} or before it
+     */
+    private E down(int i) {
+        i = i < 0 ? -1 : tombstones.previousClearBit(i);
+        return i >= 0 ? base.select(i) : null;
+    }
+
+    private E min(E a, E b) {
+        return a == null ? b : b == null || compare(a, b) <= 0 ? a : b;
+    }
+
+    private E max(E a, E b) {
+        return a == null ? b : b == null || compare(a, b) >= 0 ? a : b;
+    }
+
+    public E lower(E e) {
+        int i = position(e);
+        return max(down(i >= 0 ? i - 1 : -i - 2), delta.lower(e));
+    }
+
+    public E floor(E e) {
+        int i = position(e);
+        return max(down(i >= 0 ? i : -i - 2), delta.floor(e));
+    }
+
+    public E ceiling(E e) {
+        int i = position(e);
+        return min(up(i >= 0 ? i : -i - 1), delta.ceiling(e));
+    }
+
+    public E higher(E e) {
+        int i = position(e);
+        return min(up(i >= 0 ? i + 1 : -i - 1), delta.higher(e));
+    }
+
+    public E first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return min(up(0), delta.isEmpty() ? null : delta.first());
+    }
+
+    public E last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return max(down(base.size() - 1), delta.isEmpty() ? null : delta.last());
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        return comparator != null ? comparator.compare(a, b) : ((Comparable<? super E>) a).compareTo(b);
+    }
+}
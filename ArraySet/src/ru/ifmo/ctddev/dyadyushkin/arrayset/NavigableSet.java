@@ -27,6 +27,9 @@ public class NavigableSet<E> extends SortedSet<E> implements java.util.Navigable
     public NavigableSet(Collection<E> collection, Comparator<E> comparator) {
         super(collection, comparator);
     }
+    public NavigableSet(Collection<E> collection, Comparator<E> comparator, boolean parallel) {
+        super(collection, comparator, parallel);
+    }
 
     protected NavigableSet(NavigableSet<E> parent, E from, E to, boolean fromInclusive, boolean toInclusive) {
         super(parent, from, to);
@@ -35,32 +38,32 @@ public class NavigableSet<E> extends SortedSet<E> implements java.util.Navigable
         this.toInclusive   = toInclusive;
         //System.out.printf("FROM: %d, TO: %d\n", fromPosition, toPosition);
 
-        if (toInclusive && (toPosition < elements.length)) {
-            to = to == null ? elements[toPosition] : to;
-            if (compare(elements[toPosition], to) == 0) {
-                toPosition++;
-            }
+        if (toInclusive && to != null && toPosition < parent.toPosition && compare(elements[toPosition], to) == 0) {
+            toPosition++;
         }
-        if (!fromInclusive && (fromPosition < elements.length)) {
-            from = from == null ? elements[fromPosition] : from;
-            if (compare(elements[fromPosition], from) == 0) {
-                fromPosition++;
-                // Keep upper divide consistent
-                if (fromPosition > toPosition) {
-                    toPosition = fromPosition;
-                }
-            }
+        if (!fromInclusive && from != null && fromPosition < toPosition && compare(elements[fromPosition], from) == 0) {
+            fromPosition++;
         }
 
         assert fromPosition <= toPosition;
-        assert fromPosition >= 0 && fromPosition <= elements.length;
-        assert toPosition >= 0 && toPosition <= elements.length;
+        assert fromPosition >= parent.fromPosition && toPosition <= parent.toPosition;
     }
     protected NavigableSet(E[] elements, Comparator<E> cmp) {
         comparator = cmp;
         setElements(elements);
     }
 
+    /**
+     * Wrap strictly increasing elements without copying or sorting them.
+     */
+    static <E> NavigableSet<E> ofSorted(E[] elements, Comparator<E> cmp) {
+        NavigableSet<E> set = new NavigableSet<>();
+        set.comparator = cmp;
+        set.elements   = elements;
+        set.toPosition = elements.length;
+        return set;
+    }
+
 
     // TODO: Generalize
     @Override
@@ -90,9 +93,28 @@ public class NavigableSet<E> extends SortedSet<E> implements java.util.Navigable
         return outOfRange(pos) ? null : elements[pos];
     }
 
+    /**
+     * Batch version of {@link #ceiling(Object)}, see {@link #containsEach(Collection)}.
+     * @return ceilings of the keys in the same order, {@code null} for keys without one
+     */
+    public List<E> ceilingAll(Collection<? extends E> keys) {
+        List<E> result = new ArrayList<>(keys.size());
+        E previous = null;
+        int position = fromPosition;
+        for (E e: keys) {
+            position = castIndex(search(previous, position, e));
+            result.add(outOfRange(position) ? null : elements[position]);
+            previous = e;
+        }
+        return result;
+    }
+
+    /**
+     * @return reverse-order view sharing the elements of this set
+     */
     @Override
     public java.util.NavigableSet<E> descendingSet() {
-        return new NavigableSet<E>((E[]) toArray(), Collections.reverseOrder(comparator));
+        return new DescendingSet<>(this);
     }
 
     @Override
@@ -0,0 +1,20 @@
+package ru.ifmo.ctddev.dyadyushkin.arrayset;
+
+import java.util.Comparator;
+
+/**
+ * Distinct keys in ascending order, accessible by index.
+ * @see IndexedNavigableSet
+ */
+interface SortedKeys<E> {
+    int size();
+
+    E get(int index);
+
+    /**
+     * Search for {@code key} in {@code [from, to)} following {@link java.util.Arrays#binarySearch(Object[], int, int, Object)}.
+     */
+    int search(int from, int to, E key);
+
+    Comparator<? super E> comparator();
+}
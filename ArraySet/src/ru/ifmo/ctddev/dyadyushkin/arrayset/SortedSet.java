@@ -5,7 +5,6 @@ import java.util.*;
 public class SortedSet<E> implements java.util.SortedSet<E> {
     protected E[] elements;
     protected Comparator<E> comparator;
-    protected E from, to;
     protected int fromPosition = 0, toPosition = 0;
 
     protected class SortedSetIterator implements Iterator<E> {
@@ -37,35 +36,47 @@ public class SortedSet<E> implements java.util.SortedSet<E> {
         this(c, null);
     }
 
-    @SuppressWarnings("unchecked")
     public SortedSet(Collection<E> c, Comparator<E> cmp) {
-        this();
+        this(c, cmp, false);
+    }
+
+    /**
+     * Sort once and drop duplicates in a linear pass.
+     * Input which is already sorted by {@code cmp} is only copied.
+     * @param parallel sort with {@link Arrays#parallelSort(Object[], Comparator)}
+     */
+    @SuppressWarnings("unchecked")
+    public SortedSet(Collection<E> c, Comparator<E> cmp, boolean parallel) {
         comparator = cmp;
-        E[] newElements = (E[]) new Object[c.size()];
-        int i = 0;
-        int newCount = 0;
-        for (E e: c) {
-            if(e == null) {
+        E[] newElements = (E[]) c.toArray();
+        for (E e: newElements) {
+            if (e == null) {
                 throw new NullPointerException();
             }
-            if (Arrays.binarySearch(newElements,0, i, e, comparator) < 0) {
-                newElements[i++] = e;
-                newCount++;
-            }
         }
-        if (newCount > 0) {
-            setElements(Arrays.copyOf(newElements, newCount));
-            assert elements.length == newCount;
+        boolean sameOrder = c instanceof java.util.SortedSet
+                && Objects.equals(((java.util.SortedSet<?>) c).comparator(), cmp);
+        if (!sameOrder && !isSorted(newElements)) {
+            if (parallel) {
+                Arrays.parallelSort(newElements, comparator);
+            }
+            else {
+                Arrays.sort(newElements, comparator);
+            }
         }
+        elements = sameOrder ? newElements : distinct(newElements);
+        toPosition = elements.length;
     }
 
+    /**
+     * View of {@code parent} between {@code from} and {@code to}, {@code null} bound is the parent's one.
+     * Bounds are searched within the parent's range, so the view never extends beyond it.
+     */
     protected SortedSet(SortedSet<E> parent, E from, E to) {
         this.elements = parent.elements;
         this.comparator = parent.comparator;
-        this.from    = from == null ? parent.from : from;
-        this.to      = to   == null ? parent.to   : to;
-        toPosition   = to   == null ? parent.toPosition   : castIndex(binarySearch(to));
-        fromPosition = Math.min(toPosition, from == null ? parent.fromPosition : castIndex(binarySearch(from)));
+        toPosition   = to   == null ? parent.toPosition   : castIndex(parent.binarySearch(to));
+        fromPosition = Math.min(toPosition, from == null ? parent.fromPosition : castIndex(parent.binarySearch(from)));
     }
 
     protected void setElements(E[] elements) {
@@ -95,8 +106,6 @@ public class SortedSet<E> implements java.util.SortedSet<E> {
 
     @Override
     public java.util.SortedSet<E> tailSet(E fromElement) {
-        // TODO: separate checking of set range and indexing
-        // Cast new sets basing on elements position in it
         return new SortedSet<>(this, fromElement, null);
     }
 
@@ -130,7 +139,7 @@ public class SortedSet<E> implements java.util.SortedSet<E> {
     @Override
     public boolean contains(Object o) {
         E e = (E) o;
-        return checkRange(e) ? Arrays.binarySearch(elements, e, comparator) >= 0 : false;
+        return binarySearch(e) >= 0;
     }
 
     @Override
@@ -138,6 +147,20 @@ public class SortedSet<E> implements java.util.SortedSet<E> {
         return new SortedSetIterator(elements, fromPosition, toPosition);
     }
 
+    @Override
+    public Spliterator<E> spliterator() {
+        return spliterator(false);
+    }
+
+    /**
+     * @param descending in reverse order, for {@link DescendingSet}
+     */
+    Spliterator<E> spliterator(boolean descending) {
+        E[] items = elements;
+        return new IndexSpliterator<>(i -> items[i], fromPosition, toPosition,
+                descending ? Collections.reverseOrder(comparator) : comparator, descending);
+    }
+
     protected static int castIndex(int i) {
         return i < 0 ? (-i -1) : i;
     }
@@ -154,19 +177,114 @@ public class SortedSet<E> implements java.util.SortedSet<E> {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public boolean containsAll(Collection<?> c) {
-        for (Object e: c) {
-            if (!contains(e)) {
+        E previous = null;
+        int position = fromPosition;
+        for (Object o: c) {
+            E e = (E) o;
+            int pos = search(previous, position, e);
+            if (pos < 0) {
                 return false;
             }
+            previous = e;
+            position = pos;
         }
         return true;
     }
 
+    // Batch lookups. Keys may come in any order, but runs of ascending keys
+    // are searched from the previous answer in O(log distance) each
+
+    /**
+     * @return bitmap with bit {@code i} set if the {@code i}-th key is in the set
+     */
+    public BitSet containsEach(Collection<? extends E> keys) {
+        BitSet result = new BitSet(keys.size());
+        E previous = null;
+        int position = fromPosition;
+        int i = 0;
+        for (E e: keys) {
+            int pos = search(previous, position, e);
+            if (pos >= 0) {
+                result.set(i);
+            }
+            previous = e;
+            position = castIndex(pos);
+            i++;
+        }
+        return result;
+    }
+
+    /**
+     * @return number of elements less than {@code e}
+     */
+    public int rank(E e) {
+        return castIndex(binarySearch(e)) - fromPosition;
+    }
+
+    /**
+     * @return element with {@code index} elements less than it
+     * @throws IndexOutOfBoundsException if {@code index} is not in {@code [0, size())}
+     */
+    public E select(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        return elements[fromPosition + index];
+    }
+
     // Helpers
 
+    private boolean isSorted(E[] items) {
+        for (int i = 1; i < items.length; i++) {
+            if (compare(items[i - 1], items[i]) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove adjacent equal elements of a sorted array.
+     */
+    private E[] distinct(E[] items) {
+        int n = 0;
+        for (int i = 0; i < items.length; i++) {
+            if (n == 0 || compare(items[n - 1], items[i]) != 0) {
+                items[n++] = items[i];
+            }
+        }
+        return n == items.length ? items : Arrays.copyOf(items, n);
+    }
+
+    /**
+     * Search only the range of this set, result follows {@link Arrays#binarySearch(Object[], int, int, Object, Comparator)}.
+     */
     protected int binarySearch(E e) {
-        return Arrays.binarySearch(elements, e, comparator);
+        return Arrays.binarySearch(elements, fromPosition, toPosition, e, comparator);
+    }
+
+    /**
+     * Exponential search for {@code e} in {@code [start, toPosition)}, cheap when the answer is close to {@code start}.
+     * @return same as {@link #binarySearch(Object)} if {@code e} is not less than elements before {@code start}
+     */
+    protected int gallop(int start, E e) {
+        int lo = start, hi = start;
+        int step = 1;
+        while (hi < toPosition && compare(elements[hi], e) < 0) {
+            lo = hi + 1;
+            hi = toPosition - hi > step ? hi + step : toPosition;
+            step = step < (1 << 30) ? step << 1 : step;
+        }
+        return Arrays.binarySearch(elements, lo, hi < toPosition ? hi + 1 : hi, e, comparator);
+    }
+
+    /**
+     * Search for {@code e} which follows {@code previous} found at {@code position} in a batch.
+     */
+    protected int search(E previous, int position, E e) {
+        return previous != null && compare(previous, e) <= 0 ? gallop(position, e) : binarySearch(e);
     }
 
     @SuppressWarnings("unchecked")
@@ -179,17 +297,6 @@ public class SortedSet<E> implements java.util.SortedSet<E> {
         return comparable.compareTo(b);
     }
 
-    protected boolean checkRange(E e) {
-        boolean result = true;
-        if (from != null) {
-            result &= compare(from, e) >= 0;
-        }
-        if (to != null) {
-            result &= compare(e, to) < 0;
-        }
-        return result;
-    }
-
     @Override
     public boolean add(E e) {
         throw new UnsupportedOperationException();
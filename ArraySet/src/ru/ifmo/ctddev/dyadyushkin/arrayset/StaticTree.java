@@ -0,0 +1,49 @@
+package ru.ifmo.ctddev.dyadyushkin.arrayset;
+
+/**
+ * Shape of a static B+ tree over a sorted array, see {@code IntArraySet.indexed()}.
+ * The sorted array itself is the leaf level, cut into blocks of {@code b} elements.
+ * Every inner node holds {@code b} keys in adjacent cells and has {@code b + 1} children:
+ * child {@code i} of node {@code m} is node {@code m * (b + 1) + i} of the level below,
+ * and key {@code i} is the first element under child {@code i + 1}, or a padding key if there is none.
+ * A search reads one node per level, so it touches a few cache lines instead of a line per comparison.
+ */
+class StaticTree {
+    private StaticTree() {
+    }
+
+    /**
+     * @return offsets of the inner levels from the root down, followed by the number of keys in all of them
+     */
+    static int[] levels(int n, int b) {
+        int height = 0;
+        for (long blocks = (n + b - 1) / b; blocks > 1; blocks = (blocks + b) / (b + 1)) {
+            height++;
+        }
+        int[] offsets = new int[height + 1];
+        long blocks = (n + b - 1) / b;
+        long[] nodes = new long[height];
+        for (int h = height - 1; h >= 0; h--) {
+            blocks = (blocks + b) / (b + 1);
+            nodes[h] = blocks;
+        }
+        for (int h = 0; h < height; h++) {
+            offsets[h + 1] = Math.toIntExact(offsets[h] + nodes[h] * b);
+        }
+        return offsets;
+    }
+
+    /**
+     * @param levels result of {@link #levels(int, int)}
+     * @return position in the sorted array of key {@code i} of node {@code m} on level {@code h},
+     * possibly past its end
+     */
+    static long position(int[] levels, int b, int h, long m, int i) {
+        // First leaf block under the child, b + 1 times per level down to the leaves
+        long block = m * (b + 1) + i + 1;
+        for (int level = h + 1; level < levels.length - 1 && block * b < Integer.MAX_VALUE; level++) {
+            block *= b + 1;
+        }
+        return block * b;
+    }
+}
@@ -0,0 +1,74 @@
+package ru.ifmo.ctddev.dyadyushkin.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.ifmo.ctddev.dyadyushkin.arrayset.IntArraySet;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Navigation queries on {@link IntArraySet} with plain binary search and with the static B+ tree of {@link IntArraySet#indexed()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ArraySetBenchmark {
+    private final static int probes = 1 << 12;
+
+    @Param({"1000", "1000000", "10000000", "100000000"})
+    int size;
+
+    @Param({"sorted", "btree"})
+    String layout;
+
+    IntArraySet set;
+    int[] keys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // Even numbers, so that half of the probes are missing
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i * 2;
+        }
+        set = IntArraySet.ofSorted(values);
+        if (layout.equals("btree")) {
+            set = set.indexed();
+        }
+        Random random = new Random(4242);
+        keys = new int[probes];
+        for (int i = 0; i < probes; i++) {
+            keys[i] = random.nextInt(size * 2);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(probes)
+    public int ceiling() {
+        int sum = 0;
+        for (int key: keys) {
+            sum += set.ceiling(key, 0);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(probes)
+    public int contains() {
+        int count = 0;
+        for (int key: keys) {
+            count += set.contains(key) ? 1 : 0;
+        }
+        return count;
+    }
+
+    public static void main(String... args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ArraySetBenchmark.class.getSimpleName())
+                .forks(1)
+                .build()).run();
+    }
+}
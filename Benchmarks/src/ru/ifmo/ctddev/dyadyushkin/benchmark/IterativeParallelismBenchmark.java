@@ -0,0 +1,94 @@
+package ru.ifmo.ctddev.dyadyushkin.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.ifmo.ctddev.dyadyushkin.concurrent.IterativeParallelism;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link IterativeParallelism} with new threads per call against long-lived executors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IterativeParallelismBenchmark {
+    @Param({"100", "10000", "1000000"})
+    int size;
+
+    @Param({"1", "4", "16"})
+    int threads;
+
+    @Param({"threads", "forkjoin", "fixed"})
+    String backend;
+
+    @Param({"1", "1024"})
+    int grain;
+
+    List<Integer> data;
+    Integer target;
+    ExecutorService executor;
+    IterativeParallelism parallelism;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(4242);
+        data = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            data.add(random.nextInt());
+        }
+        target = data.get(size / 10);
+        switch (backend) {
+            case "forkjoin":
+                parallelism = new IterativeParallelism(ForkJoinPool.commonPool(), grain);
+                break;
+            case "fixed":
+                executor = Executors.newFixedThreadPool(threads);
+                parallelism = new IterativeParallelism(executor, grain);
+                break;
+            default:
+                parallelism = new IterativeParallelism(null, grain);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public Integer maximum() throws InterruptedException {
+        return parallelism.maximum(threads, data, Comparator.naturalOrder());
+    }
+
+    /**
+     * Hit in the first tenth of the list, the rest should be skipped.
+     */
+    @Benchmark
+    public boolean any() throws InterruptedException {
+        return parallelism.any(threads, data, x -> x.equals(target));
+    }
+
+    @Benchmark
+    public List<Integer> map() throws InterruptedException {
+        return parallelism.map(threads, data, x -> x + 1);
+    }
+
+    public static void main(String... args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IterativeParallelismBenchmark.class.getSimpleName())
+                .forks(1)
+                .build()).run();
+    }
+}
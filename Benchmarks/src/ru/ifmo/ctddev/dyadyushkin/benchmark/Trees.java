@@ -0,0 +1,102 @@
+package ru.ifmo.ctddev.dyadyushkin.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Synthetic file trees for benchmarks, generated on local disk.
+ * Files go to the directory set with {@code -Dbenchmark.dir}, the working directory by default;
+ * the default temporary directory is often in memory.
+ */
+public class Trees {
+    public enum Shape {
+        /** 20000 files of 0..255 bytes in 200 directories */
+        TINY,
+        /** 2 files of 256 MB */
+        HUGE,
+        /** 200 levels of directories with 20 files of 4 KB on each */
+        DEEP
+    }
+
+    private Trees() {}
+
+    /**
+     * @return directory for benchmark files
+     */
+    public static Path directory() {
+        return Paths.get(System.getProperty("benchmark.dir", "")).toAbsolutePath();
+    }
+
+    private static void file(Path path, long size, Random random) throws IOException {
+        byte[] chunk = new byte[(int) Math.min(size, 1 << 20)];
+        try (OutputStream out = Files.newOutputStream(path)) {
+            for (long left = size; left > 0; left -= chunk.length) {
+                random.nextBytes(chunk);
+                out.write(chunk, 0, (int) Math.min(left, chunk.length));
+            }
+        }
+    }
+
+    /**
+     * Create a tree of the given shape in a new directory under {@link #directory()}.
+     * @return root of the tree
+     */
+    public static Path create(Shape shape) throws IOException {
+        Path root = Files.createTempDirectory(directory(), "walk-" + shape.name().toLowerCase());
+        Random random = new Random(4242);
+        switch (shape) {
+            case TINY:
+                for (int d = 0; d < 200; d++) {
+                    Path dir = Files.createDirectory(root.resolve("d" + d));
+                    for (int f = 0; f < 100; f++) {
+                        file(dir.resolve("f" + f), random.nextInt(256), random);
+                    }
+                }
+                break;
+            case HUGE:
+                for (int f = 0; f < 2; f++) {
+                    file(root.resolve("f" + f), 256L << 20, random);
+                }
+                break;
+            case DEEP:
+                Path dir = root;
+                for (int d = 0; d < 200; d++) {
+                    dir = Files.createDirectory(dir.resolve("d" + d));
+                    for (int f = 0; f < 20; f++) {
+                        file(dir.resolve("f" + f), 4096, random);
+                    }
+                }
+                break;
+        }
+        return root;
+    }
+
+    /**
+     * Input file for Walk listing the single root.
+     */
+    public static Path input(Path root) throws IOException {
+        Path input = Files.createTempFile(directory(), "walk-input", ".txt");
+        Files.write(input, Collections.singletonList(root.toString()));
+        return input;
+    }
+
+    public static void delete(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
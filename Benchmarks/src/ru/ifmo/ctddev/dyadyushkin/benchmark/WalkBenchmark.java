@@ -0,0 +1,165 @@
+package ru.ifmo.ctddev.dyadyushkin.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.ifmo.ctddev.dyadyushkin.walk.HashAlgorithms;
+import ru.ifmo.ctddev.dyadyushkin.walk.HashFunction;
+import ru.ifmo.ctddev.dyadyushkin.walk.RecursiveWalk;
+import ru.ifmo.ctddev.dyadyushkin.walk.Walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the hash loop, the read path and the whole {@link Walk#handler(String[], Walk)}.
+ * Needs the JMH library with its annotation processor enabled; run with {@link #main(String...)}
+ * or pass a JMH regexp to it, e.g. {@code WalkBenchmark.walk}.
+ */
+public class WalkBenchmark {
+    /**
+     * Hash loop over a buffer already in memory.
+     */
+    @State(Scope.Thread)
+    public static class Loop {
+        @Param({"fnv32", "fnv1a64", "xxh64", "crc32c"})
+        String algorithm;
+
+        ByteBuffer data;
+
+        @Setup
+        public void setup() {
+            byte[] bytes = new byte[1 << 20];
+            new Random(4242).nextBytes(bytes);
+            data = ByteBuffer.allocateDirect(bytes.length);
+            data.put(bytes).flip();
+        }
+    }
+
+    /**
+     * Sums the data as longs, touching every byte at a fraction of the cost of a real hash.
+     */
+    static class Sum implements HashFunction {
+        private long sum;
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            while (buffer.remaining() >= Long.BYTES) {
+                sum += buffer.getLong();
+            }
+            while (buffer.hasRemaining()) {
+                sum += buffer.get();
+            }
+        }
+
+        @Override
+        public long digest() {
+            return sum;
+        }
+    }
+
+    /**
+     * Gives access to the read path of the walker.
+     */
+    static class Reader extends Walk {
+        long read(Path path) throws IOException {
+            Sum function = new Sum();
+            read(path, function);
+            return function.digest();
+        }
+    }
+
+    /**
+     * Reading of a single large file, through the direct buffer or mapped windows.
+     */
+    @State(Scope.Benchmark)
+    public static class File {
+        @Param({"buffered", "mapped"})
+        String mode;
+
+        Path file;
+        Reader reader = new Reader();
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            file = Files.createTempFile(Trees.directory(), "walk-bench", ".bin");
+            byte[] bytes = new byte[64 << 20];
+            new Random(4242).nextBytes(bytes);
+            Files.write(file, bytes);
+            reader.setMapThreshold(mode.equals("mapped") ? 0 : Long.MAX_VALUE);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Whole walk over a synthetic tree.
+     */
+    @State(Scope.Benchmark)
+    public static class Tree {
+        @Param({"TINY", "HUGE", "DEEP"})
+        Trees.Shape shape;
+
+        @Param({"1", "4"})
+        String threads;
+
+        Path root, input, output;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            root   = Trees.create(shape);
+            input  = Trees.input(root);
+            output = Files.createTempFile(Trees.directory(), "walk-output", ".txt");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Trees.delete(root);
+            Files.delete(input);
+            Files.delete(output);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long hashLoop(Loop state) {
+        HashFunction function = HashAlgorithms.forName(state.algorithm).create();
+        function.update(state.data.duplicate());
+        return function.digest();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long readPath(File state) throws IOException {
+        return state.reader.read(state.file);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public void walk(Tree state, Blackhole blackhole) {
+        RecursiveWalk walker = new RecursiveWalk();
+        Walk.handler(new String[]{"-j", state.threads, state.input.toString(), state.output.toString()}, walker);
+        blackhole.consume(walker.getMetrics().getFilesVisited());
+    }
+
+    public static void main(String... args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : WalkBenchmark.class.getSimpleName())
+                .forks(1)
+                .build()).run();
+    }
+}
@@ -4,27 +4,127 @@ import info.kgeorgiy.java.advanced.concurrent.ListIP;
 import info.kgeorgiy.java.advanced.concurrent.ScalarIP;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 public class IterativeParallelism implements ScalarIP, ListIP {
+    // Every thread has about this many chunks to pick up, so slow chunks are balanced by the others
+    private final static int chunksPerThread = 4;
+
+    private final ExecutorService executor;
+    // Chunks are not made smaller than this, lists with fewer than two of them are processed by the calling thread
+    private final int grain;
+
+    /**
+     * Run every operation on its own new threads.
+     */
+    public IterativeParallelism() {
+        this(null);
+    }
+
+    /**
+     * Run operations on a long-lived {@code executor}, e.g. {@link java.util.concurrent.ForkJoinPool#commonPool()},
+     * a fixed pool or a virtual-thread-per-task executor. The first chunk runs on the calling thread.
+     * The executor is not shut down by this class.
+     */
+    public IterativeParallelism(ExecutorService executor) {
+        this(executor, 1);
+    }
+
+    /**
+     * Run operations on {@code executor}, or on new threads if it is {@code null}, in chunks of at least
+     * {@code grain} elements. By default every element may go to its own thread, which suits expensive functions;
+     * cheap operations on short lists are faster with a grain of a thousand elements or so.
+     * @throws IllegalArgumentException if {@code grain} is not positive
+     */
+    public IterativeParallelism(ExecutorService executor, int grain) {
+        if (grain < 1) {
+            throw new IllegalArgumentException("Grain is not positive: " + grain);
+        }
+        this.executor = executor;
+        this.grain    = grain;
+    }
 
-    private static <T> T[] extractElements(List<? extends T> list) {
+    /**
+     * Split {@code list} into chunks and apply {@code function} to them on {@code n} threads.
+     * Threads pick up the next chunk when they are done with the previous one.
+     * @return results in the order of the chunks
+     */
+    protected <T, R> List<R> execute(int n, List<? extends T> list, Function<Spliterator<T>, ? extends R> function) throws InterruptedException {
+        int chunks = (int) Math.min((long) n * chunksPerThread, list.size() / grain);
+        if (n <= 1 || chunks <= 1) {
+            return Collections.singletonList(function.apply(IterativeParallelism.<T>split(list, 1).get(0)));
+        }
+        List<Spliterator<T>> parts = split(list, chunks);
         @SuppressWarnings("unchecked")
-        T[] elements = (T[]) new Object[list.size()];
-        return list.toArray(elements);
+        R[] results = (R[]) new Object[parts.size()];
+        AtomicInteger next = new AtomicInteger();
+        List<Integer> workers = new ArrayList<>();
+        for (int i = 0; i < Math.min(n, parts.size()); i++) {
+            workers.add(i);
+        }
+        execute(workers, (w) -> {
+            for (int i = next.getAndIncrement(); i < results.length; i = next.getAndIncrement()) {
+                results[i] = function.apply(parts.get(i));
+            }
+            return null;
+        });
+        return Arrays.asList(results);
     }
 
-    protected  <T, R> List<R> execute(int n, T[] data, Function<Spliterator<T>, ? extends R> function) throws InterruptedException {
-        ThreadedWorker<T, R> tw = new ThreadedWorker<>(n, data, function);
-        return tw.execute();
+    /**
+     * Apply {@code function} to every task in parallel.
+     * @return results in the order of the tasks
+     */
+    protected <C, R> List<R> execute(List<C> tasks, Function<? super C, ? extends R> function) throws InterruptedException {
+        int n = tasks.size();
+        if (executor == null) {
+            ThreadedWorker<C, R> tw = new ThreadedWorker<>(tasks, function);
+            return tw.execute();
+        }
+        List<Future<? extends R>> futures = new ArrayList<>(n);
+        List<R> results = new ArrayList<>(n);
+        try {
+            for (int i = 1; i < n; i++) {
+                C task = tasks.get(i);
+                futures.add(executor.submit(() -> function.apply(task)));
+            }
+            if (n > 0) {
+                results.add(function.apply(tasks.get(0)));
+            }
+            for (Future<? extends R> f: futures) {
+                results.add(f.get());
+            }
+            return results;
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        finally {
+            if (results.size() < n) {
+                for (Future<? extends R> f: futures) {
+                    f.cancel(true);
+                }
+            }
+        }
     }
 
     @Override
     public <T> T maximum(int i, List<? extends T> list, Comparator<? super T> comparator) throws InterruptedException {
-        T[] elements = extractElements(list);
         Function<Spliterator<T>, Accumulator<T>> f = (s) -> {
             Accumulator<T> acc = new Accumulator<>(null);
 
@@ -37,7 +137,7 @@ public class IterativeParallelism implements ScalarIP, ListIP {
 
             return acc;
         };
-        List<T> remaining = execute(i, elements, f).stream()
+        List<T> remaining = execute(i, list, f).stream()
                 .filter(v -> v.counter != 0)
                 .map(v -> v.value)
                 .collect(Collectors.toList());
@@ -49,7 +149,6 @@ public class IterativeParallelism implements ScalarIP, ListIP {
 
     @Override
     public <T> T minimum(int i, List<? extends T> list, Comparator<? super T> comparator) throws InterruptedException {
-        T[] elements = extractElements(list);
         Function<Spliterator<T>, Accumulator<T>> f = (s) -> {
             Accumulator<T> acc = new Accumulator<>(null);
 
@@ -63,7 +162,7 @@ public class IterativeParallelism implements ScalarIP, ListIP {
             return acc;
         };
 
-        List<T> remaining = execute(i, elements, f).stream()
+        List<T> remaining = execute(i, list, f).stream()
                 .filter(v -> v.counter != 0)
                 .map(v -> v.value)
                 .collect(Collectors.toList());
@@ -75,33 +174,33 @@ public class IterativeParallelism implements ScalarIP, ListIP {
 
     @Override
     public <T> boolean all(int i, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
-        return execute(i, extractElements(list), (s) -> {
-                Boolean[] result = new Boolean[1];
-                if (s.tryAdvance(x -> result[0] = predicate.test(x))) {
-                    s.forEachRemaining(x -> result[0] = result[0] && predicate.test(x));
-                }
-                return result[0];
-            }).stream()
-            .filter(Objects::nonNull)
-            .reduce(true, (s, c) -> s && c);
+        return !any(i, list, predicate.negate());
     }
 
+    /**
+     * Every part stops at the first matching element, and the shared flag stops the other parts as well.
+     */
     @Override
     public <T> boolean any(int i, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
-        return execute(i, extractElements(list), (s) -> {
-                Boolean[] result = new Boolean[1];
-                if (s.tryAdvance(x -> result[0] = predicate.test(x))) {
-                    s.forEachRemaining(x -> result[0] = result[0] || predicate.test(x));
-                }
-                return result[0];
-            }).stream()
-            .filter(Objects::nonNull)
-            .reduce(false, (s, c) -> s || c);
+        AtomicBoolean found = new AtomicBoolean();
+        Consumer<T> test = x -> {
+            if (predicate.test(x)) {
+                found.set(true);
+            }
+        };
+        execute(i, list, (s) -> {
+            boolean more = true;
+            while (more && !found.get()) {
+                more = s.tryAdvance(test);
+            }
+            return null;
+        });
+        return found.get();
     }
 
     @Override
     public String join(int i, List<?> list) throws InterruptedException {
-        List<String> result = execute(i, extractElements(list), (s) -> {
+        List<String> result = execute(i, list, (s) -> {
             StringBuilder sb = new StringBuilder();
 
             s.forEachRemaining(sb::append);
@@ -112,34 +211,83 @@ public class IterativeParallelism implements ScalarIP, ListIP {
         return String.join("", result);
     }
 
+    /**
+     * Matching elements of every chunk are collected into an array growing from a small one,
+     * then the arrays are copied to their offsets in the result.
+     * @return fixed-size list
+     */
     @Override
     public <T> List<T> filter(int i, List<? extends T> list, Predicate<? super T> predicate) throws InterruptedException {
-        return execute(i, extractElements(list), (s) -> {
-                List<T> results = new LinkedList<>();
-
-                s.forEachRemaining(v -> { if (predicate.test(v)) results.add(v); });
-
-                return results;
-            }).stream()
-            .reduce(new ArrayList<>(list.size()), (res, v) -> {
-                res.addAll(v);
-                return res;
-            });
+        List<Chunk> chunks = execute(i, list, (s) -> {
+            Chunk chunk = new Chunk(-1);
+            s.forEachRemaining(v -> { if (predicate.test(v)) chunk.add(v); });
+            return chunk;
+        });
+        int size = 0;
+        for (Chunk chunk: chunks) {
+            size += chunk.size;
+        }
+        return concat(chunks, new Object[size]);
     }
 
+    /**
+     * Chunks of random access lists write straight to their offsets in the result,
+     * other chunks are collected into arrays and copied like in {@link #filter}.
+     * @return fixed-size list
+     */
     @Override
     public <T, U> List<U> map(int i, List<? extends T> list, Function<? super T, ? extends U> function) throws InterruptedException {
-        return execute(i, extractElements(list), (s) -> {
-                List<U> results = new LinkedList<>();
+        Object[] result = new Object[list.size()];
+        List<Chunk> chunks = execute(i, list, (s) -> {
+            if (s instanceof RangeSpliterator) {
+                int[] position = {((RangeSpliterator<?>) s).from};
+                s.forEachRemaining(v -> result[position[0]++] = function.apply(v));
+                return null;
+            }
+            Chunk chunk = new Chunk(s.getExactSizeIfKnown());
+            s.forEachRemaining(v -> chunk.add(function.apply(v)));
+            return chunk;
+        });
+        return chunks.get(0) == null ? asList(result) : concat(chunks, result);
+    }
+
+    /**
+     * Results of a chunk in a growing array.
+     */
+    protected static class Chunk {
+        Object[] items;
+        int size = 0;
+
+        /**
+         * @param expected exact size if known, otherwise negative
+         */
+        Chunk(long expected) {
+            items = new Object[expected >= 0 ? (int) expected : 16];
+        }
+
+        void add(Object item) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, Math.max(16, items.length * 2));
+            }
+            items[size++] = item;
+        }
+    }
 
-                s.forEachRemaining(v -> results.add(function.apply(v)));
+    /**
+     * Copy chunks one after another into {@code result}, which has room for all of them.
+     */
+    private static <T> List<T> concat(List<Chunk> chunks, Object[] result) {
+        int offset = 0;
+        for (Chunk chunk: chunks) {
+            System.arraycopy(chunk.items, 0, result, offset, chunk.size);
+            offset += chunk.size;
+        }
+        return asList(result);
+    }
 
-                return results;
-            }).stream()
-            .reduce(new ArrayList<>(list.size()), (result, v) -> {
-                result.addAll(v);
-                return result;
-            });
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> asList(Object[] items) {
+        return Arrays.asList((T[]) items);
     }
 
     public static class Accumulator<T> {
@@ -151,36 +299,100 @@ public class IterativeParallelism implements ScalarIP, ListIP {
         }
     }
 
-    protected static <T> Spliterator<T>[] split(T[] data, int n) {
-        @SuppressWarnings("unchecked")
-        Spliterator<T>[] spliterators = new Spliterator[n];
-        int chunk = data.length / n;
-        int base = 0;
-        int left = data.length % n;
-        for (int i  = 0; i < n; i++){
-            int fence = Math.min(data.length, base + chunk + (i < left ? 1 : 0));
-            if (base < fence) {
-                spliterators[i] = Spliterators.spliterator(data, base, fence, Spliterator.ORDERED);
+    /**
+     * Spliterator over positions {@code [from, to)} of a random access list, reading it in place.
+     */
+    protected static class RangeSpliterator<T> implements Spliterator<T> {
+        private final List<? extends T> list;
+        private int from;
+        private final int to;
+
+        RangeSpliterator(List<? extends T> list, int from, int to) {
+            this.list = list;
+            this.from = from;
+            this.to   = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept(list.get(from++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            for (; from < to; from++) {
+                action.accept(list.get(from));
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED;
+        }
+    }
+
+    /**
+     * Split {@code list} into {@code n} consecutive parts without copying it.
+     * Random access lists are split by index, other lists with their own {@link Spliterator#trySplit()},
+     * in which case there may be fewer parts.
+     */
+    @SuppressWarnings("unchecked")
+    protected static <T> List<Spliterator<T>> split(List<? extends T> list, int n) {
+        List<Spliterator<T>> parts = new ArrayList<>(n);
+        if (list instanceof RandomAccess) {
+            int size = list.size();
+            int chunk = size / n;
+            int left = size % n;
+            for (int i = 0, from = 0; i < n; i++) {
+                int to = from + chunk + (i < left ? 1 : 0);
+                parts.add(new RangeSpliterator<>(list, from, to));
+                from = to;
+            }
+            return parts;
+        }
+        parts.add((Spliterator<T>) list.spliterator());
+        while (parts.size() < n) {
+            // Split the largest part, its prefix goes before it
+            int largest = 0;
+            for (int i = 1; i < parts.size(); i++) {
+                if (parts.get(i).estimateSize() > parts.get(largest).estimateSize()) {
+                    largest = i;
+                }
             }
-            else {
-                spliterators[i] = Spliterators.emptySpliterator();
+            Spliterator<T> prefix = parts.get(largest).trySplit();
+            if (prefix == null) {
+                break;
             }
-            base = fence;
+            parts.add(largest, prefix);
         }
-        return spliterators;
+        return parts;
     }
 
-    public static class ThreadedWorker<T, R> {
+    public static class ThreadedWorker<C, R> {
         private List<R> results;
         private Thread[] threads;
-        private Spliterator<T>[] spliterators;
-        private Function<Spliterator<T>, ? extends R> function;
+        private List<C> tasks;
+        private Function<? super C, ? extends R> function;
 
         protected class Worker implements Runnable {
             private int i;
-            private ThreadedWorker<T,R> worker;
+            private ThreadedWorker<C, R> worker;
 
-            Worker(ThreadedWorker<T, R> worker, int i) {
+            Worker(ThreadedWorker<C, R> worker, int i) {
                 this.worker = worker;
                 this.i = i;
             }
@@ -191,19 +403,20 @@ public class IterativeParallelism implements ScalarIP, ListIP {
             }
         }
 
-        ThreadedWorker(int n, T[] data, Function<Spliterator<T>, ? extends R> function) {
+        ThreadedWorker(List<C> tasks, Function<? super C, ? extends R> function) {
+            int n = tasks.size();
             threads = new Thread[n];
+            this.tasks = tasks;
             this.function = function;
             this.results = new ArrayList<>(n);
             IntStream.range(0, n).forEach(i -> this.results.add(null));
-            spliterators = split(data, n);
             for (int i = 0; i < n; i++) {
                 threads[i] = new Thread(new Worker(this, i));
             }
         }
 
         R run(int i) {
-            return this.function.apply(spliterators[i]);
+            return this.function.apply(tasks.get(i));
         }
 
         List<R> execute() throws InterruptedException {
@@ -2,10 +2,8 @@ package ru.ifmo.ctddev.dyadyushkin.mapper;
 
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
-import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
-import java.util.Spliterator;
 import java.util.function.Function;
 
 public class IterativeParallelism extends ru.ifmo.ctddev.dyadyushkin.concurrent.IterativeParallelism {
@@ -21,10 +19,10 @@ public class IterativeParallelism extends ru.ifmo.ctddev.dyadyushkin.concurrent.
     }
 
     @Override
-    protected  <T, R> List<R> execute(int n, T[] data, Function<Spliterator<T>, ? extends R> function) throws InterruptedException {
+    protected <C, R> List<R> execute(List<C> tasks, Function<? super C, ? extends R> function) throws InterruptedException {
         if (Objects.nonNull(parallelMapper)) {
-            return parallelMapper.map(function, Arrays.asList(split(data, n)));
+            return parallelMapper.map(function, tasks);
         }
-        return super.execute(n, data, function);
+        return super.execute(tasks, function);
     }
 }
@@ -0,0 +1,33 @@
+package ru.ifmo.ctddev.dyadyushkin.walk;
+
+import java.io.IOException;
+import java.nio.file.*;
+
+/**
+ * Replaces a file as a whole, so readers see either the old or the new contents.
+ * Contents are written to a temporary file next to the target, which is then moved over it.
+ */
+class AtomicFile {
+    interface Contents {
+        void write(Path tmp) throws IOException;
+    }
+
+    private AtomicFile() {}
+
+    static void replace(Path file, Contents contents) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            contents.write(tmp);
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
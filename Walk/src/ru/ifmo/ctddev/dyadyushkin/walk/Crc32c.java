@@ -0,0 +1,71 @@
+package ru.ifmo.ctddev.dyadyushkin.walk;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * {@code java.util.zip.CRC32C}, which is intrinsified by the JVM.
+ * The class appeared in Java 9, so it is looked up at runtime to keep the sources on Java 8.
+ */
+class Crc32c implements HashFunction {
+    private final static Constructor<? extends Checksum> constructor;
+    // Checksum.update(ByteBuffer) reads direct buffers without copying
+    private final static Method updateBuffer;
+
+    static {
+        Constructor<? extends Checksum> c = null;
+        Method m = null;
+        try {
+            c = Class.forName("java.util.zip.CRC32C").asSubclass(Checksum.class).getConstructor();
+            m = Checksum.class.getMethod("update", ByteBuffer.class);
+        }
+        catch (ReflectiveOperationException ignore) {
+        }
+        constructor = c;
+        updateBuffer = m;
+    }
+
+    private final Checksum checksum;
+
+    Crc32c() {
+        if (!isAvailable()) {
+            throw new UnsupportedOperationException("CRC32C requires Java 9 or later");
+        }
+        try {
+            checksum = constructor.newInstance();
+        }
+        catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException(e);
+        }
+    }
+
+    static boolean isAvailable() {
+        return constructor != null && updateBuffer != null;
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            checksum.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        try {
+            updateBuffer.invoke(checksum, buffer);
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public long digest() {
+        return checksum.getValue();
+    }
+}
@@ -0,0 +1,247 @@
+package ru.ifmo.ctddev.dyadyushkin.walk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Finds files with the same contents under the input roots.
+ * Files are first grouped by size. Files with equal sizes are told apart by the fast hash
+ * ({@code xxh64} unless set with {@code --hash}) of a few kilobytes from their start and end,
+ * and only files with equal samples are read in full for SHA-256. Small files are hashed
+ * with SHA-256 right away. Empty files are not reported.
+ * <p>
+ * Report consists of groups separated by empty lines, each group starts with
+ * {@code "<size> <count> <sha-256>"} followed by paths of the files.
+ */
+public class Dedup extends RecursiveWalk {
+    // Bytes sampled from the start and from the end of a file
+    private final static int sampleSize = 1 << 12;
+
+    private final Map<Long, List<Path>> bySize = new HashMap<>();
+    private long files, bytes, hashedBytes;
+
+    public static class Group {
+        public final long size;
+        public final String digest;
+        public final List<Path> paths;
+
+        Group(long size, String digest, List<Path> paths) {
+            this.size   = size;
+            this.digest = digest;
+            this.paths  = paths;
+        }
+    }
+
+    private static class Sha256 implements HashFunction {
+        private final MessageDigest digest;
+        private byte[] result;
+
+        Sha256() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            }
+            catch (NoSuchAlgorithmException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            digest.update(buffer);
+        }
+
+        @Override
+        public long digest() {
+            result = digest.digest();
+            return ByteBuffer.wrap(result).getLong();
+        }
+
+        String hex() {
+            StringBuilder sb = new StringBuilder();
+            for (byte b: result) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+    }
+
+    public Dedup() {
+        setAlgorithm(HashAlgorithms.XXH64);
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+        if (attrs.isRegularFile()) {
+            files++;
+            bytes += attrs.size();
+            if (attrs.size() > 0) {
+                bySize.computeIfAbsent(attrs.size(), s -> new ArrayList<>()).add(path);
+            }
+        }
+        return FileVisitResult.CONTINUE;
+    }
+
+    /**
+     * Add files under {@code line} to the candidates.
+     */
+    public void scan(String line) {
+        try {
+            Files.walkFileTree(Paths.get(line), this);
+        }
+        catch (InvalidPathException e) {
+            System.err.printf("Invalid path: %s\n", line);
+        }
+        catch (IOException e) {
+            System.err.printf("Error during processing path: %s\n", line);
+        }
+    }
+
+    private String strongHash(Path path) throws IOException {
+        Sha256 function = new Sha256();
+        read(path, function);
+        function.digest();
+        return function.hex();
+    }
+
+    /**
+     * Fast hash of the first and the last {@link #sampleSize} bytes.
+     */
+    private long sampleHash(Path path) throws IOException {
+        HashFunction function = getAlgorithm().create();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(sampleSize);
+            readAt(channel, 0, buffer, function);
+            readAt(channel, Math.max(sampleSize, channel.size() - sampleSize), buffer, function);
+        }
+        return function.digest();
+    }
+
+    private static void readAt(FileChannel channel, long position, ByteBuffer buffer, HashFunction function) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+            // Read until the buffer is full or the file ends
+        }
+        buffer.flip();
+        function.update(buffer);
+    }
+
+    private interface Key<K> {
+        K get(Path path) throws IOException;
+    }
+
+    /**
+     * Split the group by {@code key} computed on the hashing workers.
+     * Files which cannot be read and files with unique keys are dropped.
+     */
+    private <K> Map<K, List<Path>> split(List<Path> group, Key<K> key) {
+        List<Future<K>> futures = new ArrayList<>(group.size());
+        for (Path path: group) {
+            futures.add(submit(() -> key.get(path)));
+        }
+        Map<K, List<Path>> result = new LinkedHashMap<>();
+        for (int i = 0; i < group.size(); i++) {
+            try {
+                result.computeIfAbsent(futures.get(i).get(), k -> new ArrayList<>()).add(group.get(i));
+            }
+            catch (ExecutionException e) {
+                System.err.printf("Error during processing file: %s\n", group.get(i));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Collections.emptyMap();
+            }
+        }
+        result.values().removeIf(paths -> paths.size() < 2);
+        return result;
+    }
+
+    /**
+     * @return groups of duplicates among the scanned files, larger files first
+     */
+    public List<Group> find() {
+        List<Group> groups = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>(bySize.keySet());
+        sizes.sort(Comparator.reverseOrder());
+
+        for (long size: sizes) {
+            List<Path> candidates = bySize.get(size);
+            if (candidates.size() < 2) {
+                continue;
+            }
+            List<List<Path>> same;
+            if (size <= 2 * sampleSize) {
+                // Samples would cover the whole file anyway
+                same = Collections.singletonList(candidates);
+            }
+            else {
+                hashedBytes += 2L * sampleSize * candidates.size();
+                same = new ArrayList<>(split(candidates, this::sampleHash).values());
+            }
+            for (List<Path> paths: same) {
+                hashedBytes += size * paths.size();
+                for (Map.Entry<String, List<Path>> e: split(paths, this::strongHash).entrySet()) {
+                    groups.add(new Group(size, e.getKey(), e.getValue()));
+                }
+            }
+        }
+        return groups;
+    }
+
+    public static void write(List<Group> groups, Path output) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            for (Group g: groups) {
+                out.write(String.format("%d %d %s\n", g.size, g.paths.size(), g.digest));
+                for (Path p: g.paths) {
+                    out.write(p.toString());
+                    out.write('\n');
+                }
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Same options as {@link Walk} except {@code --cache} and {@code --roots},
+     * input lists the roots and output receives the report.
+     */
+    public static void main(String... args) {
+        for (String arg: args) {
+            if (arg.equals("--cache") || arg.equals("--roots")) {
+                System.err.printf("Option is not supported by dedup: %s\n", arg);
+                return;
+            }
+        }
+        Dedup dedup = new Dedup();
+        List<String> files = configure(args, dedup);
+        if (files == null) {
+            return;
+        }
+        try (BufferedReader in = new BufferedReader(new FileReader(files.get(0)))) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (line.length() > 0) {
+                    dedup.scan(line);
+                }
+            }
+            write(dedup.find(), Paths.get(files.get(1)));
+            System.out.printf("Files: %d, read %d of %d bytes\n", dedup.files, dedup.hashedBytes, dedup.bytes);
+        }
+        catch (IOException | InvalidPathException e) {
+            System.err.printf("I/O error: %s\n", e.getMessage());
+        }
+        finally {
+            dedup.shutdown();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ru.ifmo.ctddev.dyadyushkin.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 64-bit FNV-1a.
+ */
+class Fnv1a64 implements HashFunction {
+    private final static long prime = 0x100000001b3L;
+    private long hash = 0xcbf29ce484222325L;
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        long h = hash;
+        int limit = buffer.limit();
+        for (int i = buffer.position(); i < limit; i++) {
+            h ^= buffer.get(i) & 0xff;
+            h *= prime;
+        }
+        hash = h;
+        buffer.position(limit);
+    }
+
+    @Override
+    public long digest() {
+        return hash;
+    }
+}
@@ -0,0 +1,28 @@
+package ru.ifmo.ctddev.dyadyushkin.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 32-bit FNV-1 over signed bytes, the original Walk hash.
+ */
+class Fnv32 implements HashFunction {
+    private final static int prime = 0x01000193;
+    private int hash = 0x811c9dc5;
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        int h = hash;
+        int limit = buffer.limit();
+        for (int i = buffer.position(); i < limit; i++) {
+            h *= prime;
+            h ^= buffer.get(i);
+        }
+        hash = h;
+        buffer.position(limit);
+    }
+
+    @Override
+    public long digest() {
+        return hash & 0xffffffffL;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.ifmo.ctddev.dyadyushkin.walk;
+
+/**
+ * Hash algorithm for {@link Walk}.
+ * Additional algorithms may be provided through {@link java.util.ServiceLoader}.
+ * @see HashAlgorithms
+ */
+public interface HashAlgorithm {
+    /**
+     * @return name used to select the algorithm on the command line
+     */
+    String getName();
+
+    /**
+     * @return number of hex digits written for a hash
+     */
+    int getWidth();
+
+    HashFunction create();
+}
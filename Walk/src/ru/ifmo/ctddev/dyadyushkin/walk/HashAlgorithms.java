@@ -0,0 +1,79 @@
+package ru.ifmo.ctddev.dyadyushkin.walk;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Registry of hash algorithms known to {@link Walk}.
+ */
+public final class HashAlgorithms {
+    /**
+     * 32-bit FNV-1, the default one
+     */
+    public static final HashAlgorithm FNV32 = new SimpleAlgorithm("fnv32", 8, Fnv32::new);
+    public static final HashAlgorithm FNV1A64 = new SimpleAlgorithm("fnv1a64", 16, Fnv1a64::new);
+    public static final HashAlgorithm XXH64 = new SimpleAlgorithm("xxh64", 16, XxHash64::new);
+    public static final HashAlgorithm CRC32C = new SimpleAlgorithm("crc32c", 8, Crc32c::new);
+
+    private static final Map<String, HashAlgorithm> algorithms = new LinkedHashMap<>();
+
+    static {
+        register(FNV32);
+        register(FNV1A64);
+        register(XXH64);
+        if (Crc32c.isAvailable()) {
+            register(CRC32C);
+        }
+        for (HashAlgorithm a: ServiceLoader.load(HashAlgorithm.class)) {
+            register(a);
+        }
+    }
+
+    private static class SimpleAlgorithm implements HashAlgorithm {
+        private final String name;
+        private final int width;
+        private final Supplier<HashFunction> factory;
+
+        SimpleAlgorithm(String name, int width, Supplier<HashFunction> factory) {
+            this.name    = name;
+            this.width   = width;
+            this.factory = factory;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public HashFunction create() {
+            return factory.get();
+        }
+    }
+
+    private HashAlgorithms() {}
+
+    private static void register(HashAlgorithm algorithm) {
+        algorithms.putIfAbsent(algorithm.getName(), algorithm);
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no algorithm with such name
+     */
+    public static HashAlgorithm forName(String name) {
+        HashAlgorithm algorithm = algorithms.get(name);
+        if (algorithm == null) {
+            throw new IllegalArgumentException(String.format("Unknown hash algorithm: %s, available: %s", name, names()));
+        }
+        return algorithm;
+    }
+
+    public static Set<String> names() {
+        return Collections.unmodifiableSet(algorithms.keySet());
+    }
+}
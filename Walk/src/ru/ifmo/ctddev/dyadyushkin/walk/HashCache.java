@@ -0,0 +1,165 @@
+package ru.ifmo.ctddev.dyadyushkin.walk;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-disk cache of file hashes between runs.
+ * An entry is valid while size, modification time and file key of the file stay the same.
+ * Only entries looked up or stored during the current run are written back,
+ * so files which disappeared or were not visited are evicted.
+ */
+public class HashCache {
+    private final static int magic   = 0x57414c4b;
+    private final static int version = 2;
+    private final static int bufferSize = 1 << 16;
+
+    private final Path file;
+    private final String algorithm;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    protected static class Entry {
+        final long size, modified;
+        final String key;
+        final long hash;
+        volatile boolean live;
+
+        Entry(long size, long modified, String key, long hash) {
+            this.size     = size;
+            this.modified = modified;
+            this.key      = key;
+            this.hash     = hash;
+        }
+
+        Entry(BasicFileAttributes attrs, long hash) {
+            this(attrs.size(), attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS), fileKey(attrs), hash);
+        }
+
+        boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size()
+                    && modified == attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS)
+                    && key.equals(fileKey(attrs));
+        }
+    }
+
+    private HashCache(Path file, String algorithm) {
+        this.file      = file;
+        this.algorithm = algorithm;
+    }
+
+    private static String fileKey(BasicFileAttributes attrs) {
+        Object key = attrs.fileKey();
+        return key == null ? "" : key.toString();
+    }
+
+    /**
+     * Read cache from {@code file}. Missing or broken file, or one written for
+     * another hash algorithm, gives an empty cache.
+     */
+    public static HashCache load(Path file, String algorithm) {
+        HashCache cache = new HashCache(file, algorithm);
+        if (!Files.exists(file)) {
+            return cache;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), bufferSize))) {
+            if (in.readInt() != magic || in.readInt() != version) {
+                System.err.printf("Unknown hash cache format, ignored: %s\n", file);
+                return cache;
+            }
+            if (!algorithm.equals(readString(in))) {
+                return cache;
+            }
+            for (int n = in.readInt(); n > 0; n--) {
+                String path  = readString(in);
+                long size    = in.readLong();
+                long modified = in.readLong();
+                String key   = readString(in);
+                cache.entries.put(path, new Entry(size, modified, key, in.readLong()));
+            }
+        }
+        catch (IOException e) {
+            System.err.printf("Hash cache is broken, ignored: %s\n", file);
+            cache.entries.clear();
+        }
+        return cache;
+    }
+
+    /**
+     * @return cached entry if the file has not changed since it was hashed, otherwise {@code null}
+     */
+    public Entry lookup(String path, BasicFileAttributes attrs) {
+        Entry entry = entries.get(path);
+        if (entry == null || !entry.matches(attrs)) {
+            return null;
+        }
+        entry.live = true;
+        return entry;
+    }
+
+    public void store(String path, BasicFileAttributes attrs, long hash) {
+        Entry entry = new Entry(attrs, hash);
+        entry.live = true;
+        entries.put(path, entry);
+    }
+
+    /**
+     * Mark the entry of a removed file as dead, so it is not written back.
+     */
+    public void evict(String path) {
+        Entry entry = entries.get(path);
+        if (entry != null) {
+            entry.live = false;
+        }
+    }
+
+    /**
+     * Write live entries back, replacing the cache file.
+     */
+    public void save() throws IOException {
+        int count = 0;
+        for (Entry e: entries.values()) {
+            count += e.live ? 1 : 0;
+        }
+        int live = count;
+        AtomicFile.replace(file, tmp -> {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), bufferSize))) {
+                out.writeInt(magic);
+                out.writeInt(version);
+                writeString(out, algorithm);
+                out.writeInt(live);
+                for (Map.Entry<String, Entry> e: entries.entrySet()) {
+                    Entry entry = e.getValue();
+                    if (!entry.live) {
+                        continue;
+                    }
+                    writeString(out, e.getKey());
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.modified);
+                    writeString(out, entry.key);
+                    out.writeLong(entry.hash);
+                }
+            }
+        });
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative string length");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,19 @@
+package ru.ifmo.ctddev.dyadyushkin.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * State of a single hash computation.
+ * @see HashAlgorithm#create()
+ */
+public interface HashFunction {
+    /**
+     * Feed all remaining bytes of {@code buffer}, leaving its position at the limit.
+     */
+    void update(ByteBuffer buffer);
+
+    /**
+     * @return hash of all bytes fed so far, in the lowest {@link HashAlgorithm#getWidth()} hex digits
+     */
+    long digest();
+}
@@ -2,15 +2,25 @@ package ru.ifmo.ctddev.dyadyushkin.walk;
 
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
 
 public class RecursiveWalk extends Walk implements FileVisitor<Path> {
     @Override
     public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+        enterDirectory(dir);
         return FileVisitResult.CONTINUE;
     }
 
+    /**
+     * With {@code --watch} as the first argument keeps running and updates the output on changes.
+     * @see WalkWatcher
+     */
     public static void main(String... args) {
         RecursiveWalk w = new RecursiveWalk();
+        if (args.length > 0 && args[0].equals("--watch")) {
+            WalkWatcher.handler(Arrays.copyOfRange(args, 1, args.length), w);
+            return;
+        }
         handler(args, w);
     }
 }
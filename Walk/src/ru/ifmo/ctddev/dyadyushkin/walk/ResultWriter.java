@@ -0,0 +1,141 @@
+package ru.ifmo.ctddev.dyadyushkin.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes {@code "%08x %s\n"} lines (or wider hashes) in UTF-8 without formatting and encoder objects.
+ * Lines are collected in a buffer and written to the channel in large batches.
+ * Like {@link java.io.PrintWriter} it never throws on write, see {@link #checkError()}.
+ */
+public class ResultWriter implements Closeable {
+    private final static int bufferSize = 1 << 16;
+    private final static byte[] digits = "0123456789abcdef".getBytes();
+
+    private final WritableByteChannel channel;
+    private final int width;
+    private byte[] bytes = new byte[bufferSize];
+    private int position = 0;
+    private long written = 0;
+    private IOException error;
+
+    public ResultWriter(WritableByteChannel channel) {
+        this(channel, 8);
+    }
+
+    /**
+     * @param width number of hex digits written for a hash
+     */
+    public ResultWriter(WritableByteChannel channel, int width) {
+        this.channel = channel;
+        this.width   = width;
+    }
+
+    public void write(long hash, String path) {
+        // Hash, space, newline and at most 3 bytes per char
+        int length = width + 2 + path.length() * 3;
+        if (bytes.length - position < length) {
+            flush();
+            if (bytes.length < length) {
+                bytes = new byte[length];
+            }
+        }
+        putHash(bytes, position, hash, width);
+        position += width;
+        bytes[position++] = ' ';
+        putString(path);
+        bytes[position++] = '\n';
+    }
+
+    private static void putHash(byte[] b, int p, long hash, int width) {
+        for (int shift = (width - 1) * 4; shift >= 0; shift -= 4) {
+            b[p++] = digits[(int) (hash >>> shift) & 0xf];
+        }
+    }
+
+    /**
+     * @return hash as it is written at the start of a line
+     */
+    public static byte[] hex(long hash, int width) {
+        byte[] b = new byte[width];
+        putHash(b, 0, hash, width);
+        return b;
+    }
+
+    /**
+     * @return number of bytes written so far, including buffered ones
+     */
+    public long position() {
+        return written + position;
+    }
+
+    private void putString(String s) {
+        byte[] b = bytes;
+        int p = position;
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                b[p++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                b[p++] = (byte) (0xc0 | (c >> 6));
+                b[p++] = (byte) (0x80 | (c & 0x3f));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[p++] = (byte) (0xf0 | (cp >> 18));
+                b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                b[p++] = (byte) (0x80 | (cp & 0x3f));
+            }
+            else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate is replaced the same way as PrintWriter does it
+                b[p++] = '?';
+            }
+            else {
+                b[p++] = (byte) (0xe0 | (c >> 12));
+                b[p++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                b[p++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        position = p;
+    }
+
+    public void flush() {
+        written += position;
+        if (position == 0 || error != null) {
+            position = 0;
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, position);
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        catch (IOException e) {
+            error = e;
+        }
+        position = 0;
+    }
+
+    /**
+     * @return {@code true} if some output was lost because of an I/O error
+     */
+    public boolean checkError() {
+        flush();
+        return error != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -1,34 +1,284 @@
 package ru.ifmo.ctddev.dyadyushkin.walk;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 
-public class Walk implements FileVisitor<Path> {
-	private final static int fnv_primal = 0x01000193;
-	private PrintWriter out;
+public class Walk implements FileVisitor<Path>, Cloneable {
+	private final static int bufferSize = 1 << 16;
+	// Large files are mapped by parts, so that they are never mapped at once
+	private final static long mapWindow = 1L << 26;
+	private final static ThreadLocal<ByteBuffer> buffers =
+			ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(bufferSize));
+	// Hashes queued per worker before the walker waits for the oldest one
+	private final static int pendingPerThread = 16;
+	// Results buffered for each root walked in parallel, until it becomes the head of input
+	private final static int rootBuffer = 1024;
+	private final static Result end = new Result(null, null);
+	private ResultWriter out;
+	private long mapThreshold = 1L << 24;
+	private HashAlgorithm algorithm = HashAlgorithms.FNV32;
+	private HashCache cache;
+	private WalkMetrics metrics = new WalkMetrics();
+	private ExecutorService hashPool;
+	private int maxPending;
+	private Deque<Result> pending = new ArrayDeque<>();
+	private ExecutorService rootPool;
+	private int rootThreads;
+	private Deque<BlockingQueue<Result>> roots = new ArrayDeque<>();
+	// Set for copies walking a single root in parallel with others
+	private BlockingQueue<Result> buffer;
+	// Set for copies collecting a root, told about every directory before it is read
+	private Consumer<Path> directories;
 
-	private static int fnv(InputStream in) throws IOException {
-		int hash = 0x811c9dc5;
-		int len;
-		byte[] buffer = new byte[4096];
+	protected static class Result {
+		final Future<Long> hash;
+		final String path;
 
-		while((len = in.read(buffer)) >= 0) {
-			for (int i = 0; i < len; i++) {
-				hash *= fnv_primal;
-				hash ^= buffer[i];
-			}
+		Result(Future<Long> hash, String path) {
+			this.hash = hash;
+			this.path = path;
+		}
+	}
+
+	private void readBuffered(FileChannel channel, HashFunction function) throws IOException {
+		ByteBuffer buffer = buffers.get();
+
+		buffer.clear();
+		long time = System.nanoTime();
+		for (int n; (n = channel.read(buffer)) >= 0; ) {
+			long read = System.nanoTime();
+			buffer.flip();
+			function.update(buffer);
+			buffer.clear();
+			long hashed = System.nanoTime();
+			metrics.read(n, read - time);
+			metrics.hashed(hashed - read);
+			time = hashed;
 		}
-		in.close();
-		return hash;
 	}
 
-	private void setOutput(PrintWriter out) {
+	private void readMapped(FileChannel channel, long size, HashFunction function) throws IOException {
+		for (long position = 0; position < size; position += mapWindow) {
+			long time = System.nanoTime();
+			long length = Math.min(mapWindow, size - position);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+			long mapped = System.nanoTime();
+			function.update(buffer);
+			metrics.read(length, mapped - time);
+			metrics.hashed(System.nanoTime() - mapped);
+		}
+	}
+
+	private void setOutput(ResultWriter out) {
 		this.out = out;
 	}
 
-	private void writeResult(int hash, String path) {
-		out.printf("%08x %s\n", hash, path);
+	/**
+	 * Files of at least {@code threshold} bytes are hashed through memory mapping,
+	 * smaller ones are read into a direct buffer.
+	 */
+	public void setMapThreshold(long threshold) {
+		mapThreshold = threshold;
+	}
+
+	public void setAlgorithm(HashAlgorithm algorithm) {
+		this.algorithm = algorithm;
+	}
+
+	public HashAlgorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	public WalkMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Take hashes of unchanged files from {@code cache} and remember the computed ones there.
+	 */
+	public void setCache(HashCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Hash files on {@code threads} workers while the tree is still traversed in order.
+	 * Values below 2 keep hashing on the walking thread.
+	 */
+	public void setThreads(int threads) {
+		if (hashPool != null) {
+			hashPool.shutdown();
+			hashPool = null;
+		}
+		if (threads > 1) {
+			hashPool = Executors.newFixedThreadPool(threads);
+			maxPending = threads * pendingPerThread;
+		}
+	}
+
+	/**
+	 * Walk up to {@code threads} input roots at the same time on a work-stealing pool.
+	 * Results are still written in the order of input.
+	 * Values below 2 walk roots one by one.
+	 */
+	public void setRootThreads(int threads) {
+		if (rootPool != null) {
+			rootPool.shutdown();
+			rootPool = null;
+		}
+		rootThreads = threads;
+		if (threads > 1) {
+			rootPool = Executors.newWorkStealingPool(threads);
+		}
+	}
+
+	protected void shutdown() {
+		setThreads(0);
+		setRootThreads(0);
+		metrics.stopProgress();
+	}
+
+	private void writeResult(long hash, String path) {
+		if (buffer == null && pending.isEmpty()) {
+			printResult(hash, path);
+		}
+		else {
+			submitResult(CompletableFuture.completedFuture(hash), path);
+		}
+	}
+
+	private void submitResult(Future<Long> hash, String path) {
+		Result r = new Result(hash, path);
+		if (buffer != null) {
+			putResult(r);
+			return;
+		}
+		pending.add(r);
+		flushPending(false);
+	}
+
+	private void putResult(Result r) {
+		try {
+			buffer.put(r);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	protected void saveCache() {
+		if (cache == null) {
+			return;
+		}
+		try {
+			cache.save();
+		}
+		catch (IOException e) {
+			System.err.println("Hash cache cannot be saved");
+			System.err.println(e);
+		}
+	}
+
+	/**
+	 * Forget the cached hash of a removed file.
+	 */
+	protected void evictCache(String path) {
+		if (cache != null) {
+			cache.evict(path);
+		}
+	}
+
+	/**
+	 * Write out finished hashes from the head of the queue, keeping the order of submission.
+	 * @param all wait for every queued hash instead of only the finished ones
+	 */
+	protected void flushPending(boolean all) {
+		while (!pending.isEmpty()) {
+			Result r = pending.peek();
+			if (!all && !r.hash.isDone() && pending.size() <= maxPending) {
+				break;
+			}
+			pending.poll();
+			printResult(getHash(r), r.path);
+		}
+	}
+
+	private long getHash(Result r) {
+		try {
+			return r.hash.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) {
+			metrics.error();
+			System.err.printf("Error during processing file: %s\n", r.path);
+		}
+		return 0;
+	}
+
+	private void printResult(long hash, String path) {
+		out.write(hash, path);
+	}
+
+	/**
+	 * Feed contents of the file to {@code function}, the same way files are hashed.
+	 */
+	protected void read(Path path, HashFunction function) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size >= mapThreshold) {
+				readMapped(channel, size, function);
+			}
+			else {
+				readBuffered(channel, function);
+			}
+		}
+	}
+
+	protected long hash(Path path) throws IOException {
+		HashFunction function = algorithm.create();
+		read(path, function);
+		return function.digest();
+	}
+
+	/**
+	 * Run {@code task} on the hashing workers, or right away if there are none.
+	 */
+	protected <T> Future<T> submit(Callable<T> task) {
+		if (hashPool != null) {
+			return hashPool.submit(task);
+		}
+		FutureTask<T> future = new FutureTask<>(task);
+		future.run();
+		return future;
+	}
+
+	private long hashFile(Path path, BasicFileAttributes attrs) {
+		try {
+			long start = System.nanoTime();
+			long hash = hash(path);
+			metrics.fileHashed(System.nanoTime() - start);
+			if (cache != null) {
+				cache.store(path.toString(), attrs, hash);
+			}
+			return hash;
+		}
+		catch (Exception e) {
+			metrics.error();
+			System.err.printf("Error during processing file: %s\n", path);
+		}
+		return 0;
 	}
 
 	@Override
@@ -39,22 +289,26 @@ public class Walk implements FileVisitor<Path> {
 
 	@Override
 	public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
-		int hash = 0;
+		String name = path.toString();
+		HashCache.Entry cached = cache == null ? null : cache.lookup(name, attrs);
 
-		try {
-			InputStream in = new BufferedInputStream(new FileInputStream(path.toString()));
-			hash = fnv(in);
+		metrics.fileVisited();
+		if (cached != null) {
+			metrics.cacheHit();
+			writeResult(cached.hash, name);
 		}
-		catch (Exception e) {
-			System.err.printf("Error during processing file: %s\n", path);
+		else if (hashPool != null) {
+			submitResult(hashPool.submit(() -> hashFile(path, attrs)), name);
+		}
+		else {
+			writeResult(hashFile(path, attrs), name);
 		}
-
-		writeResult(hash, path.toString());
 		return FileVisitResult.CONTINUE;
 	}
 
 	@Override
 	public FileVisitResult visitFileFailed(Path file, IOException exc) {
+		metrics.error();
 		return FileVisitResult.CONTINUE;
 	}
 
@@ -63,6 +317,102 @@ public class Walk implements FileVisitor<Path> {
 		return FileVisitResult.CONTINUE;
 	}
 
+	/**
+	 * Copy of the walker which sends results of a single root to its own bounded buffer.
+	 */
+	/**
+	 * Called by visitors which descend into {@code dir}, before its entries are read.
+	 */
+	protected void enterDirectory(Path dir) {
+		if (directories != null) {
+			directories.accept(dir);
+		}
+	}
+
+	protected Walk fork() {
+		try {
+			Walk w = (Walk) clone();
+			w.pending = new ArrayDeque<>();
+			w.roots   = new ArrayDeque<>();
+			w.buffer  = new ArrayBlockingQueue<>(rootBuffer);
+			w.out     = null;
+			return w;
+		}
+		catch (CloneNotSupportedException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Walk a root from input, either right away or in parallel with the previous ones.
+	 */
+	protected void process(String line) {
+		if (rootPool == null) {
+			walk(line);
+			return;
+		}
+		// Every root in flight holds a worker, so the head one always makes progress
+		while (roots.size() >= rootThreads) {
+			drainRoot();
+		}
+		Walk w = fork();
+		roots.add(w.buffer);
+		rootPool.execute(() -> {
+			try {
+				w.walk(line);
+			}
+			finally {
+				w.putResult(end);
+			}
+		});
+	}
+
+	private void drainRoot() {
+		BlockingQueue<Result> head = roots.poll();
+		try {
+			for (Result r = head.take(); r != end; r = head.take()) {
+				printResult(getHash(r), r.path);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Write out all results of roots processed so far.
+	 */
+	protected void finish() {
+		while (!roots.isEmpty()) {
+			drainRoot();
+		}
+		flushPending(true);
+	}
+
+	/**
+	 * Walk a single root and collect its results in order, path to hash.
+	 */
+	protected LinkedHashMap<String, Long> collect(String line) {
+		return collect(line, null);
+	}
+
+	/**
+	 * Same as {@link #collect(String)}, passing every directory of the walk to {@code directories}
+	 * before its entries are read.
+	 */
+	protected LinkedHashMap<String, Long> collect(String line, Consumer<Path> directories) {
+		Walk w = fork();
+		w.buffer = new LinkedBlockingQueue<>();
+		w.directories = directories;
+		w.walk(line);
+
+		LinkedHashMap<String, Long> results = new LinkedHashMap<>();
+		for (Result r: w.buffer) {
+			results.put(r.path, getHash(r));
+		}
+		return results;
+	}
+
 	protected void walk(String line) {
 		try {
 			Path path = Paths.get(line);
@@ -72,26 +422,105 @@ public class Walk implements FileVisitor<Path> {
 					return;
 				}
 				catch (IOException e) {
+					metrics.error();
 					System.err.printf("Error during processing path: %s\n", path);
 					System.err.println(e);
 				}
 			}
 		}
 		catch (InvalidPathException e) {
+			metrics.error();
 			System.err.printf("Invalid path: %s\n", line);
 		}
 		writeResult(0, line);
 	}
 
-    public static void handler(String[] args, Walk walker) {
-	    if (args.length != 2) {
+    private static int intOption(String[] args, int i) {
+		long value = longOption(args, i);
+		if (value != (int) value) {
+			throw new IllegalArgumentException(String.format("Invalid value for option %s: %s", args[i - 1], args[i]));
+		}
+		return (int) value;
+	}
+
+    private static String stringOption(String[] args, int i) {
+		if (i >= args.length) {
+			throw new IllegalArgumentException(String.format("Missing value for option: %s", args[i - 1]));
+		}
+		return args[i];
+	}
+
+    private static long longOption(String[] args, int i) {
+		try {
+			return Long.parseLong(stringOption(args, i));
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format("Invalid value for option %s: %s", args[i - 1], args[i]));
+		}
+	}
+
+    /**
+     * Apply options to the walker.
+     * Usage: {@code [-j threads] [--roots threads] [--hash algorithm] [--mmap-threshold bytes] [--cache file] [--progress seconds] [--jmx] <input> <output>}
+     * @return input and output file names, or {@code null} if arguments are invalid
+     */
+    protected static List<String> configure(String[] args, Walk walker) {
+		List<String> files = new ArrayList<>();
+		Path cachePath = null;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+					case "-j":
+						walker.setThreads(intOption(args, ++i));
+						break;
+					case "--roots":
+						walker.setRootThreads(intOption(args, ++i));
+						break;
+					case "--mmap-threshold":
+						walker.setMapThreshold(longOption(args, ++i));
+						break;
+					case "--hash":
+						walker.setAlgorithm(HashAlgorithms.forName(stringOption(args, ++i)));
+						break;
+					case "--cache":
+						cachePath = Paths.get(stringOption(args, ++i));
+						break;
+					case "--progress":
+						walker.metrics.startProgress(longOption(args, ++i));
+						break;
+					case "--jmx":
+						walker.metrics.register();
+						break;
+					default:
+						files.add(args[i]);
+				}
+			}
+			if (cachePath != null) {
+				walker.setCache(HashCache.load(cachePath, walker.algorithm.getName()));
+			}
+		}
+		catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			walker.shutdown();
+			return null;
+		}
+	    if (files.size() != 2) {
 	        System.err.println("Too many or too little number of arguments were specified.");
-	        return;
+			walker.shutdown();
+	        return null;
         }
-        String inputPath  = args[0];
-	    String outputPath = args[1];
+		return files;
+	}
+
+    public static void handler(String[] args, Walk walker) {
+		List<String> files = configure(args, walker);
+		if (files == null) {
+			return;
+		}
+        String inputPath  = files.get(0);
+	    String outputPath = files.get(1);
 		try (BufferedReader in = new BufferedReader(new FileReader(inputPath))) {
-			try (PrintWriter out = new PrintWriter(outputPath, "utf-8")) {
+			try (ResultWriter out = new ResultWriter(new FileOutputStream(outputPath).getChannel(), walker.algorithm.getWidth())) {
 				String s = "";
 
 				walker.setOutput(out);
@@ -100,13 +529,15 @@ public class Walk implements FileVisitor<Path> {
 						if (s.length() == 0) {
 							continue;
 						}
-						walker.walk(s);
+						walker.process(s);
 					}
 				}
 				catch (IOException e) {
 					System.err.printf("I/O error during on: %s\n", s);
 				}
+				walker.finish();
 				out.close();
+				walker.saveCache();
 			}
 			catch (FileNotFoundException e) {
 				System.err.printf("Output file cannot be created: %s\n", outputPath);
@@ -121,6 +552,9 @@ public class Walk implements FileVisitor<Path> {
 		catch (IOException e) {
 			System.err.printf("I/O error on file: %s\n", inputPath);
 		}
+		finally {
+			walker.shutdown();
+		}
     }
 
     public static void main(String... args) {
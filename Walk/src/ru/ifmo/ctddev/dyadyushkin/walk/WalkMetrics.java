@@ -0,0 +1,181 @@
+package ru.ifmo.ctddev.dyadyushkin.walk;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a walk. They are updated once per file or per read chunk,
+ * never per byte, so they are kept always on.
+ * Reads of mapped files fault pages in while hashing, so their I/O is counted as hashing time.
+ */
+public class WalkMetrics implements WalkMetricsMBean {
+    private final static String objectName = "ru.ifmo.ctddev.dyadyushkin.walk:type=WalkMetrics";
+    private final static int buckets = 64;
+
+    private final long start = System.nanoTime();
+    private final LongAdder visited = new LongAdder();
+    private final LongAdder hashed = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder ioNanos = new LongAdder();
+    private final LongAdder cpuNanos = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    // Bucket i counts files hashed in [2^(i-1), 2^i) nanoseconds
+    private final AtomicLongArray latencies = new AtomicLongArray(buckets);
+    private ScheduledExecutorService progress;
+
+    void fileVisited() {
+        visited.increment();
+    }
+
+    void cacheHit() {
+        cacheHits.increment();
+    }
+
+    void error() {
+        errors.increment();
+    }
+
+    void read(long count, long nanos) {
+        bytes.add(count);
+        ioNanos.add(nanos);
+    }
+
+    void hashed(long nanos) {
+        cpuNanos.add(nanos);
+    }
+
+    void fileHashed(long nanos) {
+        hashed.increment();
+        latencyNanos.add(nanos);
+        latencies.incrementAndGet(buckets - Long.numberOfLeadingZeros(Math.max(nanos, 0)));
+    }
+
+    @Override
+    public long getFilesVisited() {
+        return visited.sum();
+    }
+
+    @Override
+    public long getFilesHashed() {
+        return hashed.sum();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getBytesHashed() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getIoWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(ioNanos.sum());
+    }
+
+    @Override
+    public long getHashCpuMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(cpuNanos.sum());
+    }
+
+    @Override
+    public double getMeanLatencyMicros() {
+        long n = hashed.sum();
+        return n == 0 ? 0 : latencyNanos.sum() / 1e3 / n;
+    }
+
+    private long percentile(double p) {
+        long total = 0;
+        for (int i = 0; i < buckets; i++) {
+            total += latencies.get(i);
+        }
+        long rank = (long) Math.ceil(total * p);
+        for (int i = 0; i < buckets; i++) {
+            rank -= latencies.get(i);
+            if (rank <= 0) {
+                return (1L << i) / 1000;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public long getMedianLatencyMicros() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public long getP99LatencyMicros() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public double getThroughputMBps() {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return seconds == 0 ? 0 : bytes.sum() / 1e6 / seconds;
+    }
+
+    @Override
+    public String getProgress() {
+        return String.format("files: %d (hashed %d, cached %d), %.1f MB at %.1f MB/s, io %d ms, hash %d ms, "
+                        + "latency mean %.0f us p50 %d us p99 %d us, errors: %d",
+                getFilesVisited(), getFilesHashed(), getCacheHits(),
+                getBytesHashed() / 1e6, getThroughputMBps(), getIoWaitMillis(), getHashCpuMillis(),
+                getMeanLatencyMicros(), getMedianLatencyMicros(), getP99LatencyMicros(), getErrors());
+    }
+
+    /**
+     * Publish the counters in the platform MBean server, replacing the ones of a previous walk.
+     */
+    public void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(objectName);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        }
+        catch (JMException e) {
+            System.err.println("Walk metrics cannot be registered");
+            System.err.println(e);
+        }
+    }
+
+    /**
+     * Print {@link #getProgress()} to {@code System.err} every {@code seconds}.
+     */
+    public synchronized void startProgress(long seconds) {
+        if (seconds <= 0) {
+            throw new IllegalArgumentException("Progress period must be positive");
+        }
+        stopProgress();
+        progress = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "walk-progress");
+            t.setDaemon(true);
+            return t;
+        });
+        progress.scheduleAtFixedRate(() -> System.err.println(getProgress()), seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopProgress() {
+        if (progress != null) {
+            progress.shutdownNow();
+            progress = null;
+        }
+    }
+}
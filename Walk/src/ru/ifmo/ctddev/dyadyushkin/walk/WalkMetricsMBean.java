@@ -0,0 +1,39 @@
+package ru.ifmo.ctddev.dyadyushkin.walk;
+
+/**
+ * JMX view of {@link WalkMetrics}.
+ */
+public interface WalkMetricsMBean {
+    long getFilesVisited();
+
+    long getFilesHashed();
+
+    long getCacheHits();
+
+    long getBytesHashed();
+
+    long getErrors();
+
+    /**
+     * @return time spent waiting for reads, summed over all workers
+     */
+    long getIoWaitMillis();
+
+    /**
+     * @return time spent hashing read data, summed over all workers
+     */
+    long getHashCpuMillis();
+
+    double getMeanLatencyMicros();
+
+    /**
+     * Per-file hash latency percentiles are upper bounds of power-of-two buckets.
+     */
+    long getMedianLatencyMicros();
+
+    long getP99LatencyMicros();
+
+    double getThroughputMBps();
+
+    String getProgress();
+}
@@ -0,0 +1,337 @@
+package ru.ifmo.ctddev.dyadyushkin.walk;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Keeps the output of a walk up to date after the initial run.
+ * Directories of the roots are watched for changes as they are walked; created and modified files are re-hashed
+ * and deleted ones are dropped. Changed hashes are patched in place in the output file,
+ * which is rewritten from memory only when files appear or disappear.
+ * New files are written after the already known files of their root.
+ * Roots that do not exist at start are written as missing and not watched.
+ * The hash cache, if any, is saved now and then and on exit; removed files are evicted from it.
+ */
+public class WalkWatcher {
+    // Events are collected until there were none for this long...
+    private final static long quietPeriod = 200;
+    // ...but no longer than this since the first one
+    private final static long maxDelay = 2000;
+    // Hash cache is saved at most this often
+    private final static long saveInterval = 60_000;
+
+    private final Walk walker;
+    private final Path output;
+    private final List<String> lines;
+    // Root paths, null for invalid ones
+    private final List<Path> roots = new ArrayList<>();
+    private final List<LinkedHashMap<String, Long>> results = new ArrayList<>();
+    // Offsets of the lines of every root in the output
+    private final List<HashMap<String, Long>> offsets = new ArrayList<>();
+    // Files of every root with hashes changed since the last write
+    private final List<Set<String>> patches = new ArrayList<>();
+    // Lines were added or removed since the last write
+    private boolean rewrite = true;
+    private final WatchService watcher;
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+    private final Set<Path> watched = new HashSet<>();
+    private long lastSaved;
+
+    public WalkWatcher(Walk walker, List<String> lines, Path output) throws IOException {
+        this.walker  = walker;
+        this.lines   = lines;
+        this.output  = output;
+        this.watcher = FileSystems.getDefault().newWatchService();
+        for (String line: lines) {
+            try {
+                roots.add(Paths.get(line));
+            }
+            catch (InvalidPathException e) {
+                roots.add(null);
+            }
+            results.add(new LinkedHashMap<>());
+            offsets.add(new HashMap<>());
+            patches.add(new HashSet<>());
+        }
+    }
+
+    /**
+     * @param dir directory as written in the roots, so event paths resolved against it match them
+     */
+    private void watch(Path dir) throws IOException {
+        if (watched.add(dir)) {
+            // Empty path is the parent of a bare file name
+            Path target = dir.toString().isEmpty() ? dir.toAbsolutePath() : dir;
+            keys.put(target.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+        }
+    }
+
+    /**
+     * Watch a directory of a walk before its entries are read, so no change is missed.
+     */
+    private void enter(Path dir) {
+        try {
+            watch(dir);
+        }
+        catch (IOException e) {
+            System.err.printf("Cannot watch path: %s\n", dir);
+        }
+    }
+
+    private LinkedHashMap<String, Long> collect(String line) {
+        return walker.collect(line, this::enter);
+    }
+
+    /**
+     * Replace results of the {@code i}-th root, evicting files which are gone from the cache.
+     */
+    private void replace(int i, LinkedHashMap<String, Long> files) {
+        Map<String, Long> old = results.get(i);
+        Set<String> patched = patches.get(i);
+        if (old.size() != files.size()) {
+            rewrite = true;
+        }
+        Iterator<Map.Entry<String, Long>> it = old.entrySet().iterator();
+        for (Map.Entry<String, Long> e: files.entrySet()) {
+            if (!it.hasNext()) {
+                break;
+            }
+            Map.Entry<String, Long> o = it.next();
+            if (!o.getKey().equals(e.getKey())) {
+                rewrite = true;
+            }
+            else if (!o.getValue().equals(e.getValue())) {
+                patched.add(e.getKey());
+            }
+        }
+        for (String name: old.keySet()) {
+            if (!files.containsKey(name)) {
+                walker.evictCache(name);
+            }
+        }
+        results.set(i, files);
+    }
+
+    /**
+     * Add or update files of the {@code i}-th root.
+     */
+    private void merge(int i, Map<String, Long> files) {
+        Map<String, Long> current = results.get(i);
+        for (Map.Entry<String, Long> e: files.entrySet()) {
+            Long old = current.put(e.getKey(), e.getValue());
+            if (old == null) {
+                rewrite = true;
+            }
+            else if (!old.equals(e.getValue())) {
+                patches.get(i).add(e.getKey());
+            }
+        }
+    }
+
+    private void rescan() {
+        for (int i = 0; i < lines.size(); i++) {
+            Path root = roots.get(i);
+            if (root != null && Files.exists(root) && !Files.isDirectory(root)) {
+                // Changes of a file are reported to its directory
+                enter(root.getParent() != null ? root.getParent() : Paths.get(""));
+            }
+            replace(i, collect(lines.get(i)));
+        }
+    }
+
+    /**
+     * Bring the output up to date, patching changed hashes in place if no lines were added or removed.
+     */
+    private void write() throws IOException {
+        boolean patch = false;
+        for (Set<String> patched: patches) {
+            patch |= !patched.isEmpty();
+        }
+        if (!rewrite && !Files.exists(output)) {
+            rewrite = true;
+        }
+        if (rewrite) {
+            AtomicFile.replace(output, tmp -> {
+                try (ResultWriter out = new ResultWriter(FileChannel.open(tmp, StandardOpenOption.WRITE), walker.getAlgorithm().getWidth())) {
+                    for (int i = 0; i < results.size(); i++) {
+                        Map<String, Long> lineOffsets = offsets.get(i);
+                        lineOffsets.clear();
+                        for (Map.Entry<String, Long> e: results.get(i).entrySet()) {
+                            lineOffsets.put(e.getKey(), out.position());
+                            out.write(e.getValue(), e.getKey());
+                        }
+                    }
+                }
+            });
+        }
+        else if (patch) {
+            int width = walker.getAlgorithm().getWidth();
+            try (FileChannel channel = FileChannel.open(output, StandardOpenOption.WRITE)) {
+                for (int i = 0; i < results.size(); i++) {
+                    for (String name: patches.get(i)) {
+                        ByteBuffer hash = ByteBuffer.wrap(ResultWriter.hex(results.get(i).get(name), width));
+                        long offset = offsets.get(i).get(name);
+                        while (hash.hasRemaining()) {
+                            channel.write(hash, offset + hash.position());
+                        }
+                    }
+                }
+            }
+        }
+        else {
+            return;
+        }
+        rewrite = false;
+        for (Set<String> patched: patches) {
+            patched.clear();
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastSaved >= saveInterval) {
+            walker.saveCache();
+            lastSaved = now;
+        }
+    }
+
+    /**
+     * Collect paths from the burst of events started by {@code key}.
+     * @return {@code null} if some events were lost and everything has to be rescanned
+     */
+    private Set<Path> coalesce(WatchKey key) throws InterruptedException {
+        Set<Path> changed = new LinkedHashSet<>();
+        long deadline = System.currentTimeMillis() + maxDelay;
+        boolean overflow = false;
+
+        while (key != null) {
+            Path dir = keys.get(key);
+            for (WatchEvent<?> event: key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    overflow = true;
+                }
+                else if (dir != null) {
+                    changed.add(dir.resolve((Path) event.context()));
+                }
+            }
+            if (!key.reset()) {
+                keys.remove(key);
+            }
+            long wait = Math.min(quietPeriod, deadline - System.currentTimeMillis());
+            key = wait > 0 ? watcher.poll(wait, TimeUnit.MILLISECONDS) : null;
+        }
+        return overflow ? null : changed;
+    }
+
+    /**
+     * @param walked directories collected during this update, their contents are already up to date
+     */
+    private void update(Path path, Set<Path> walked) {
+        for (Path p = path.getParent(); p != null; p = p.getParent()) {
+            if (walked.contains(p)) {
+                return;
+            }
+        }
+        String name = path.toString();
+        String prefix = name + path.getFileSystem().getSeparator();
+        boolean exists = Files.exists(path, LinkOption.NOFOLLOW_LINKS);
+        boolean directory = exists && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS);
+
+        if (directory && watched.contains(path)) {
+            // Known directory, its entries report their own changes
+            return;
+        }
+        if (!exists) {
+            watched.removeIf(p -> p.equals(path) || p.startsWith(path));
+        }
+        if (directory) {
+            walked.add(path);
+        }
+        for (int i = 0; i < roots.size(); i++) {
+            Path root = roots.get(i);
+            if (root == null || !path.startsWith(root)) {
+                continue;
+            }
+            if (root.equals(path)) {
+                replace(i, collect(lines.get(i)));
+                continue;
+            }
+            Map<String, Long> files = results.get(i);
+            if (!exists || directory) {
+                for (Iterator<String> it = files.keySet().iterator(); it.hasNext(); ) {
+                    String p = it.next();
+                    if (p.equals(name) || p.startsWith(prefix)) {
+                        it.remove();
+                        walker.evictCache(p);
+                        rewrite = true;
+                    }
+                }
+            }
+            if (exists) {
+                merge(i, collect(name));
+            }
+        }
+    }
+
+    /**
+     * Walk all roots and then keep the output updated until the thread is interrupted.
+     */
+    public void run() throws IOException {
+        rescan();
+        write();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> changed = coalesce(watcher.take());
+                if (changed == null) {
+                    rescan();
+                }
+                else {
+                    Set<Path> walked = new HashSet<>();
+                    for (Path path: changed) {
+                        update(path, walked);
+                    }
+                }
+                write();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ClosedWatchServiceException ignore) {
+        }
+        finally {
+            walker.saveCache();
+            watcher.close();
+        }
+    }
+
+    /**
+     * Same arguments as {@link Walk#handler(String[], Walk)}.
+     */
+    public static void handler(String[] args, Walk walker) {
+        List<String> files = Walk.configure(args, walker);
+        if (files == null) {
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(files.get(0)))) {
+            for (String s = in.readLine(); s != null; s = in.readLine()) {
+                if (s.length() > 0) {
+                    lines.add(s);
+                }
+            }
+            new WalkWatcher(walker, lines, Paths.get(files.get(1))).run();
+        }
+        catch (IOException e) {
+            System.err.printf("I/O error: %s\n", e.getMessage());
+        }
+        finally {
+            walker.shutdown();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package ru.ifmo.ctddev.dyadyushkin.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * XXH64 with zero seed. Input is consumed by 32-byte stripes of four little-endian words.
+ */
+class XxHash64 implements HashFunction {
+    private final static long p1 = 0x9E3779B185EBCA87L;
+    private final static long p2 = 0xC2B2AE3D27D4EB4FL;
+    private final static long p3 = 0x165667B19E3779F9L;
+    private final static long p4 = 0x85EBCA77C2B2AE63L;
+    private final static long p5 = 0x27D4EB2F165667C5L;
+    private final static int stripe = 32;
+
+    private long v1 = p1 + p2, v2 = p2, v3 = 0, v4 = -p1;
+    private long total = 0;
+    // Bytes of an incomplete stripe left from the previous update
+    private final ByteBuffer tail = ByteBuffer.allocate(stripe).order(ByteOrder.LITTLE_ENDIAN);
+
+    private static long round(long acc, long input) {
+        acc += input * p2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * p1;
+    }
+
+    private static long merge(long acc, long v) {
+        acc ^= round(0, v);
+        return acc * p1 + p4;
+    }
+
+    private void stripes(ByteBuffer buffer, int from, int to) {
+        long a = v1, b = v2, c = v3, d = v4;
+        for (int i = from; i + stripe <= to; i += stripe) {
+            a = round(a, buffer.getLong(i));
+            b = round(b, buffer.getLong(i + 8));
+            c = round(c, buffer.getLong(i + 16));
+            d = round(d, buffer.getLong(i + 24));
+        }
+        v1 = a; v2 = b; v3 = c; v4 = d;
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        ByteOrder order = buffer.order();
+        int position = buffer.position();
+        int limit = buffer.limit();
+        total += limit - position;
+
+        if (tail.position() > 0) {
+            while (tail.hasRemaining() && position < limit) {
+                tail.put(buffer.get(position++));
+            }
+            if (tail.hasRemaining()) {
+                buffer.position(limit);
+                return;
+            }
+            stripes(tail, 0, stripe);
+            tail.clear();
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int full = position + (limit - position) / stripe * stripe;
+        stripes(buffer, position, full);
+        buffer.order(order);
+        for (int i = full; i < limit; i++) {
+            tail.put(buffer.get(i));
+        }
+        buffer.position(limit);
+    }
+
+    @Override
+    public long digest() {
+        long h;
+        if (total >= stripe) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(h, v1);
+            h = merge(h, v2);
+            h = merge(h, v3);
+            h = merge(h, v4);
+        }
+        else {
+            h = p5;
+        }
+        h += total;
+
+        int length = tail.position();
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            h ^= round(0, tail.getLong(i));
+            h = Long.rotateLeft(h, 27) * p1 + p4;
+        }
+        if (i + 4 <= length) {
+            h ^= (tail.getInt(i) & 0xffffffffL) * p1;
+            h = Long.rotateLeft(h, 23) * p2 + p3;
+            i += 4;
+        }
+        for (; i < length; i++) {
+            h ^= (tail.get(i) & 0xff) * p5;
+            h = Long.rotateLeft(h, 11) * p1;
+        }
+
+        h ^= h >>> 33;
+        h *= p2;
+        h ^= h >>> 29;
+        h *= p3;
+        h ^= h >>> 32;
+        return h;
+    }
+}